@@ -7,6 +7,7 @@ import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
@@ -65,6 +66,20 @@ public class GatewayController {
         }
     }
 
+    @GetMapping("/matches")
+    @Operation(summary = "Search plagiarism matches",
+               description = "Teacher dashboard query over stored matches, most similar first. Filters: assignmentId, " +
+                       "workId, matchedWorkId, studentName, matchedStudentName, verdict, minSimilarity, latestOnly; " +
+                       "paging: page, size")
+    public ResponseEntity<?> findMatches(@RequestParam MultiValueMap<String, String> params) {
+        try {
+            return ResponseEntity.ok(gatewayService.findMatches(params));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Service temporarily unavailable: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/works/{workId}/wordcloud")
     @Operation(summary = "Get word cloud for a work", 
                description = "Returns word frequency data for visualization as word cloud")
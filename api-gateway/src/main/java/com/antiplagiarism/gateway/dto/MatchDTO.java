@@ -0,0 +1,20 @@
+package com.antiplagiarism.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class MatchDTO {
+    private String matchedWorkId;
+    private String studentName;
+    private Double similarityPercent;
+    private String submittedAt;
+    private String assignmentId;
+    private String verdict;
+    private List<PassageDTO> passages;
+}
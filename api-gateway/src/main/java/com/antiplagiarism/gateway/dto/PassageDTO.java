@@ -0,0 +1,19 @@
+package com.antiplagiarism.gateway.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class PassageDTO {
+    private int offset;
+    private int length;
+    private int matchedOffset;
+    private int matchedLength;
+    private Integer rawOffset;
+    private Integer rawLength;
+    private Integer matchedRawOffset;
+    private Integer matchedRawLength;
+}
@@ -5,6 +5,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @AllArgsConstructor
@@ -16,7 +17,9 @@ public class ReportDTO {
     private Boolean plagiarismDetected;
     private Double originalityPercent;
     private String verdict;
-    private String details;
+    // some comparisons timed out, they are the UNRESOLVED matches
+    private Boolean incomplete;
+    private List<MatchDTO> matches;
     private LocalDateTime createdAt;
     private LocalDateTime completedAt;
 }
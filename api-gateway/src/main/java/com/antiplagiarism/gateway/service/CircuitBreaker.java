@@ -0,0 +1,145 @@
+package com.antiplagiarism.gateway.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Count-based circuit breaker over the outcomes of the last window calls.
+ * CLOSED: calls pass; once at least minCalls outcomes are recorded and the share of failures
+ * reaches failureRate, the breaker opens. OPEN: calls are refused for openMs, then it turns
+ * HALF_OPEN and lets trialCalls through; if all of them succeed it closes with a clean window,
+ * the first failure opens it again.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minCalls;
+    private final double failureRate;
+    private final long openNanos;
+    private final int trialCalls;
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // ring buffer of the last outcomes, true = failure
+    private final boolean[] outcomes;
+    private int recorded;
+    private int next;
+    private int failures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int trialsStarted;
+    private int trialsSucceeded;
+
+    public CircuitBreaker(int window, int minCalls, double failureRate, long openMs, int trialCalls) {
+        this.outcomes = new boolean[Math.max(1, window)];
+        this.minCalls = Math.max(1, Math.min(minCalls, outcomes.length));
+        this.failureRate = failureRate;
+        this.openNanos = TimeUnit.MILLISECONDS.toNanos(openMs);
+        this.trialCalls = Math.max(1, trialCalls);
+    }
+
+    // true if a call may go out now; in HALF_OPEN this takes one of the trial slots
+    public boolean tryAcquire() {
+        lock.lock();
+        try {
+            if (state == State.OPEN) {
+                if (System.nanoTime() - openedAt < openNanos) {
+                    return false;
+                }
+                state = State.HALF_OPEN;
+                trialsStarted = 0;
+                trialsSucceeded = 0;
+            }
+            if (state == State.HALF_OPEN) {
+                if (trialsStarted >= trialCalls) {
+                    return false;
+                }
+                trialsStarted++;
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onSuccess() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                if (++trialsSucceeded >= trialCalls) {
+                    state = State.CLOSED;
+                    recorded = 0;
+                    next = 0;
+                    failures = 0;
+                }
+            } else if (state == State.CLOSED) {
+                record(false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void onFailure() {
+        lock.lock();
+        try {
+            if (state == State.HALF_OPEN) {
+                open();
+            } else if (state == State.CLOSED) {
+                record(true);
+                if (recorded >= minCalls && failures >= failureRate * recorded) {
+                    open();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // refusing calls right now; an OPEN breaker whose open period is over is not
+    public boolean isOpen() {
+        lock.lock();
+        try {
+            return state == State.OPEN && System.nanoTime() - openedAt < openNanos;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public State getState() {
+        lock.lock();
+        try {
+            return state;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // failure share of the current window, 0 when nothing is recorded
+    public double getFailureRate() {
+        lock.lock();
+        try {
+            return recorded == 0 ? 0.0 : (double) failures / recorded;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void record(boolean failure) {
+        if (recorded == outcomes.length && outcomes[next]) {
+            failures--;
+        }
+        outcomes[next] = failure;
+        if (failure) {
+            failures++;
+        }
+        next = (next + 1) % outcomes.length;
+        recorded = Math.min(recorded + 1, outcomes.length);
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = System.nanoTime();
+    }
+}
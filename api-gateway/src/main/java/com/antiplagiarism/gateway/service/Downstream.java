@@ -0,0 +1,168 @@
+package com.antiplagiarism.gateway.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * One downstream service: its own pooled HTTP client, a bulkhead that caps concurrent calls and a
+ * circuit breaker. A slow or failing service uses up only its own connections and permits, and once
+ * the breaker opens callers are refused right away instead of queueing behind it.
+ * Client errors (4xx) mean the service is fine and do not count against it, except 408 and 429,
+ * which say it is overloaded; server errors, I/O errors, timeouts and calls slower than slowCallMs do. Reported in /actuator/health as
+ * DEGRADED while the breaker is not closed.
+ */
+public class Downstream implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED");
+
+    private final String name;
+    private final String displayName;
+    private final RestTemplate restTemplate;
+    private final CloseableHttpClient httpClient;
+    private final Semaphore bulkhead;
+    private final int maxConcurrent;
+    private final long bulkheadWaitMs;
+    private final long slowCallNanos;
+    private final CircuitBreaker breaker;
+
+    private final Timer succeeded;
+    private final Timer failed;
+    private final Counter bulkheadFull;
+    private final Counter circuitOpen;
+
+    public Downstream(String name, String displayName, RestTemplate restTemplate, CloseableHttpClient httpClient,
+                      int maxConcurrent, long bulkheadWaitMs, long slowCallMs, CircuitBreaker breaker,
+                      MeterRegistry meterRegistry) {
+        this.name = name;
+        this.displayName = displayName;
+        this.restTemplate = restTemplate;
+        this.httpClient = httpClient;
+        this.bulkhead = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.bulkheadWaitMs = bulkheadWaitMs;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(slowCallMs);
+        this.breaker = breaker;
+        this.succeeded = callTimer(meterRegistry, "success");
+        this.failed = callTimer(meterRegistry, "failure");
+        this.bulkheadFull = refusedCounter(meterRegistry, "bulkhead-full");
+        this.circuitOpen = refusedCounter(meterRegistry, "circuit-open");
+        Gauge.builder("downstream.circuit.state", breaker, b -> b.getState().ordinal())
+                .description("Circuit breaker state: 0 closed, 1 open, 2 half-open")
+                .tag("downstream", name)
+                .register(meterRegistry);
+        Gauge.builder("downstream.in.flight", this, d -> d.maxConcurrent - d.bulkhead.availablePermits())
+                .description("Calls holding a bulkhead permit")
+                .tag("downstream", name)
+                .register(meterRegistry);
+    }
+
+    private Timer callTimer(MeterRegistry registry, String outcome) {
+        return Timer.builder("downstream.calls")
+                .description("Latency of calls to a downstream service, by outcome as seen by the circuit breaker")
+                .tag("downstream", name)
+                .tag("outcome", outcome)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    private Counter refusedCounter(MeterRegistry registry, String reason) {
+        return Counter.builder("downstream.refused")
+                .description("Calls refused without reaching the downstream service")
+                .tag("downstream", name)
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    /**
+     * Runs call with this service's RestTemplate under the bulkhead and the circuit breaker.
+     * Exceptions of the call are rethrown as they are; a refused call throws RefusedException.
+     */
+    public <T> T call(Function<RestTemplate, T> call) {
+        if (!acquirePermit()) {
+            bulkheadFull.increment();
+            throw new RefusedException(displayName + " busy: too many concurrent calls");
+        }
+        try {
+            if (!breaker.tryAcquire()) {
+                circuitOpen.increment();
+                throw new RefusedException(displayName + " unavailable: circuit open");
+            }
+            long start = System.nanoTime();
+            boolean failure = true;
+            try {
+                T result = call.apply(restTemplate);
+                failure = false;
+                return result;
+            } catch (HttpClientErrorException e) {
+                failure = isOverload(e);
+                throw e;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                if (failure || elapsed > slowCallNanos) {
+                    breaker.onFailure();
+                } else {
+                    breaker.onSuccess();
+                }
+                (failure ? failed : succeeded).record(elapsed, TimeUnit.NANOSECONDS);
+            }
+        } finally {
+            bulkhead.release();
+        }
+    }
+
+    // request timeout and too many requests: the service is up but cannot keep up
+    private static boolean isOverload(HttpClientErrorException e) {
+        int status = e.getStatusCode().value();
+        return status == HttpStatus.REQUEST_TIMEOUT.value() || status == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    // false while the breaker refuses calls, lets a caller skip work that would be wasted
+    public boolean isAvailable() {
+        return !breaker.isOpen();
+    }
+
+    private boolean acquirePermit() {
+        try {
+            return bulkhead.tryAcquire(bulkheadWaitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public Health health() {
+        CircuitBreaker.State state = breaker.getState();
+        return Health.status(state == CircuitBreaker.State.CLOSED ? Status.UP : DEGRADED)
+                .withDetail("circuit", state)
+                .withDetail("failureRate", Math.round(breaker.getFailureRate() * 1000) / 10.0)
+                .withDetail("inFlight", maxConcurrent - bulkhead.availablePermits())
+                .withDetail("maxConcurrent", maxConcurrent)
+                .build();
+    }
+
+    public void close() throws IOException {
+        httpClient.close();
+    }
+
+    // the call was not made: bulkhead full or circuit open
+    public static class RefusedException extends RuntimeException {
+        public RefusedException(String message) {
+            super(message);
+        }
+    }
+}
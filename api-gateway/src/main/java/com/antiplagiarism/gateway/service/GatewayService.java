@@ -2,15 +2,18 @@ package com.antiplagiarism.gateway.service;
 
 import com.antiplagiarism.gateway.dto.ReportDTO;
 import com.antiplagiarism.gateway.dto.WorkSubmissionResponse;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.core.io.ByteArrayResource;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -21,7 +24,11 @@ import java.util.Map;
 @Service
 public class GatewayService {
 
-    private final RestTemplate restTemplate;
+    private final Downstream fileStoring;
+    private final Downstream fileAnalysis;
+    private final Timer uploadTimer;
+    private final Timer createWorkTimer;
+    private final DistributionSummary uploadBytes;
 
     @Value("${file.storing.service.url}")
     private String fileStoringUrl;
@@ -29,34 +36,61 @@ public class GatewayService {
     @Value("${file.analysis.service.url}")
     private String analysisUrl;
 
-    public GatewayService(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public GatewayService(@Qualifier("fileStoring") Downstream fileStoring,
+                          @Qualifier("fileAnalysis") Downstream fileAnalysis, MeterRegistry meterRegistry) {
+        this.fileStoring = fileStoring;
+        this.fileAnalysis = fileAnalysis;
+        this.uploadTimer = stageTimer(meterRegistry, "upload");
+        this.createWorkTimer = stageTimer(meterRegistry, "create-work");
+        this.uploadBytes = DistributionSummary.builder("gateway.upload.bytes")
+                .description("Size of submitted files")
+                .baseUnit("bytes")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private static Timer stageTimer(MeterRegistry registry, String stage) {
+        return Timer.builder("gateway.submit.stage")
+                .description("Time spent in one step of a work submission")
+                .tag("stage", stage)
+                .publishPercentileHistogram()
+                .register(registry);
     }
 
     public WorkSubmissionResponse submitWork(MultipartFile file, String studentName, String assignmentId) throws IOException {
-        String fileId = uploadFile(file);
-        String workId = createWork(fileId, studentName, assignmentId);
+        uploadBytes.record(file.getSize());
+        // the stored file would be orphaned if the work cannot be created afterwards
+        if (!fileAnalysis.isAvailable()) {
+            throw new RuntimeException("File Analysis Service unavailable: circuit open");
+        }
+        Timer.Sample sample = Timer.start();
+        Map<?, ?> uploaded;
+        try {
+            uploaded = uploadFile(file);
+        } finally {
+            sample.stop(uploadTimer);
+        }
+        String workId = createWorkTimer.record(() -> createWork((String) uploaded.get("fileId"),
+                (String) uploaded.get("contentHash"), studentName, assignmentId));
         return new WorkSubmissionResponse(workId, "Work submitted successfully", "PROCESSING");
     }
 
-    private String uploadFile(MultipartFile file) throws IOException {
+    // returns the stored file's metadata: fileId, contentHash, ...
+    private Map<?, ?> uploadFile(MultipartFile file) throws IOException {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.MULTIPART_FORM_DATA);
 
+        // the part is read from the multipart temp file while the request is written, never held in heap
         MultiValueMap<String, Object> body = new LinkedMultiValueMap<>();
-        body.add("file", new ByteArrayResource(file.getBytes()) {
-            @Override
-            public String getFilename() {
-                return file.getOriginalFilename();
-            }
-        });
+        body.add("file", file.getResource());
 
         HttpEntity<MultiValueMap<String, Object>> req = new HttpEntity<>(body, headers);
 
         try {
-            ResponseEntity<Map> resp = restTemplate.postForEntity(fileStoringUrl + "/files", req, Map.class);
+            ResponseEntity<Map> resp = fileStoring.call(rt ->
+                    rt.postForEntity(fileStoringUrl + "/files", req, Map.class));
             if (resp.getStatusCode() == HttpStatus.OK && resp.getBody() != null) {
-                return (String) resp.getBody().get("fileId");
+                return resp.getBody();
             }
             throw new RuntimeException("Failed to upload file");
         } catch (RestClientException e) {
@@ -64,7 +98,7 @@ public class GatewayService {
         }
     }
 
-    private String createWork(String fileId, String studentName, String assignmentId) {
+    private String createWork(String fileId, String contentHash, String studentName, String assignmentId) {
         HttpHeaders headers = new HttpHeaders();
         headers.setContentType(MediaType.APPLICATION_JSON);
 
@@ -72,12 +106,17 @@ public class GatewayService {
         body.put("fileId", fileId);
         body.put("studentName", studentName);
         body.put("assignmentId", assignmentId);
+        if (contentHash != null) {
+            body.put("contentHash", contentHash);
+        }
 
         HttpEntity<Map<String, String>> req = new HttpEntity<>(body, headers);
 
         try {
-            ResponseEntity<Map> resp = restTemplate.postForEntity(analysisUrl + "/analysis", req, Map.class);
-            if (resp.getStatusCode() == HttpStatus.OK && resp.getBody() != null) {
+            // analysis service answers 202 once the work is queued
+            ResponseEntity<Map> resp = fileAnalysis.call(rt ->
+                    rt.postForEntity(analysisUrl + "/analysis", req, Map.class));
+            if (resp.getStatusCode().is2xxSuccessful() && resp.getBody() != null) {
                 return (String) resp.getBody().get("workId");
             }
             throw new RuntimeException("Failed to create work");
@@ -88,11 +127,11 @@ public class GatewayService {
 
     public List<ReportDTO> getReports(String workId) {
         try {
-            ResponseEntity<List<ReportDTO>> resp = restTemplate.exchange(
-                    analysisUrl + "/analysis/reports/" + workId,
+            ResponseEntity<List<ReportDTO>> resp = fileAnalysis.call(rt -> rt.exchange(
+                    analysisUrl + "/analysis/reports/{workId}",
                     HttpMethod.GET, null,
-                    new ParameterizedTypeReference<List<ReportDTO>>() {}
-            );
+                    new ParameterizedTypeReference<List<ReportDTO>>() {}, workId
+            ));
             if (resp.getStatusCode() == HttpStatus.OK) {
                 return resp.getBody();
             }
@@ -102,12 +141,29 @@ public class GatewayService {
         }
     }
 
-    public Object getWordCloud(String workId, int maxWords) {
+    // query parameters are passed through as they came, the analysis service validates them
+    public Object findMatches(MultiValueMap<String, String> params) {
         try {
-            ResponseEntity<Map> resp = restTemplate.exchange(
-                    analysisUrl + "/analysis/wordcloud/" + workId + "?maxWords=" + maxWords,
+            ResponseEntity<Map> resp = fileAnalysis.call(rt -> rt.exchange(
+                    UriComponentsBuilder.fromHttpUrl(analysisUrl + "/analysis/matches")
+                            .queryParams(params).encode().build().toUri(),
                     HttpMethod.GET, null, Map.class
-            );
+            ));
+            if (resp.getStatusCode() == HttpStatus.OK) {
+                return resp.getBody();
+            }
+            throw new RuntimeException("Failed to fetch matches");
+        } catch (RestClientException e) {
+            throw new RuntimeException("Analysis Service unavailable", e);
+        }
+    }
+
+    public Object getWordCloud(String workId, int maxWords) {
+        try {
+            ResponseEntity<Map> resp = fileAnalysis.call(rt -> rt.exchange(
+                    analysisUrl + "/analysis/wordcloud/{workId}?maxWords={maxWords}",
+                    HttpMethod.GET, null, Map.class, workId, maxWords
+            ));
             if (resp.getStatusCode() == HttpStatus.OK) {
                 return resp.getBody();
             }
@@ -0,0 +1,67 @@
+package com.antiplagiarism.benchmarks;
+
+import com.antiplagiarism.analysis.dto.PlagiarismResult;
+import com.antiplagiarism.analysis.engine.TextArtifact;
+import com.antiplagiarism.analysis.service.PlagiarismDetectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// one submission checked against an assignment of earlier works, every 10th of them a near copy
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class AnalyzePlagiarismBenchmark {
+
+    private static final int KGRAM = 12;
+    private static final int WINDOW = 16;
+
+    @Param({"10", "100", "1000"})
+    public int corpusSize;
+
+    @Param({"4096"})
+    public int documentSize;
+
+    // threads of the comparison pool, 0 = one per core
+    @Param({"1", "0"})
+    public int parallelism;
+
+    private PlagiarismDetectionService service;
+    private ExecutorService executor;
+    private TextArtifact current;
+    private List<PlagiarismDetectionService.WorkContentPair> previousWorks;
+
+    @Setup
+    public void setUp() {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        executor = Executors.newFixedThreadPool(threads);
+        service = new PlagiarismDetectionService(executor, 0, new SimpleMeterRegistry());
+
+        String submission = Corpus.document(42, documentSize);
+        current = TextArtifact.build(submission, KGRAM, WINDOW);
+        previousWorks = new ArrayList<>(corpusSize);
+        for (int i = 0; i < corpusSize; i++) {
+            String text = i % 10 == 0 ? Corpus.mutate(submission, 0.1, i) : Corpus.document(1000 + i, documentSize);
+            previousWorks.add(new PlagiarismDetectionService.WorkContentPair(
+                    "work-" + i, "student-" + i, "2024-01-01T00:00", TextArtifact.build(text, KGRAM, WINDOW)));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public PlagiarismResult analyzePlagiarism() {
+        return service.analyzePlagiarism(current, previousWorks);
+    }
+}
@@ -0,0 +1,88 @@
+package com.antiplagiarism.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic documents built from the sample works (test_work*.txt).
+ * Documents are stitched from runs of consecutive sample words, so they keep natural
+ * word lengths and letter frequencies; the same seed always gives the same text.
+ */
+public final class Corpus {
+
+    private static final String[] SAMPLES = {
+            "test_work1.txt", "test_work2_plagiarism.txt", "test_work3_original.txt"
+    };
+
+    private static final String[] WORDS = loadWords();
+
+    private Corpus() {
+    }
+
+    public static String document(long seed, int sizeChars) {
+        Random random = new Random(seed);
+        StringBuilder sb = new StringBuilder(sizeChars + 64);
+        while (sb.length() < sizeChars) {
+            int start = random.nextInt(WORDS.length);
+            int run = 5 + random.nextInt(20);
+            for (int i = 0; i < run && sb.length() < sizeChars; i++) {
+                sb.append(WORDS[(start + i) % WORDS.length]).append(random.nextInt(12) == 0 ? '\n' : ' ');
+            }
+        }
+        sb.setLength(sizeChars);
+        return sb.toString();
+    }
+
+    // replaces the given fraction of words with random sample words, 0 = identical copy, 1 = unrelated text
+    public static String mutate(String text, double fraction, long seed) {
+        Random random = new Random(seed);
+        String[] words = text.split(" ");
+        for (int i = 0; i < words.length; i++) {
+            if (random.nextDouble() < fraction) {
+                words[i] = WORDS[random.nextInt(WORDS.length)];
+            }
+        }
+        return String.join(" ", words);
+    }
+
+    // same text with Cyrillic letters transliterated, used as the latin-alphabet variant
+    public static String latin(String text) {
+        String from = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя";
+        String[] to = {"a", "b", "v", "g", "d", "e", "e", "zh", "z", "i", "y", "k", "l", "m", "n", "o", "p",
+                "r", "s", "t", "u", "f", "kh", "ts", "ch", "sh", "sch", "", "y", "", "e", "yu", "ya"};
+        StringBuilder sb = new StringBuilder(text.length() + text.length() / 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            int idx = from.indexOf(Character.toLowerCase(c));
+            if (idx < 0) {
+                sb.append(c);
+            } else if (Character.isUpperCase(c) && !to[idx].isEmpty()) {
+                sb.append(Character.toUpperCase(to[idx].charAt(0))).append(to[idx], 1, to[idx].length());
+            } else {
+                sb.append(to[idx]);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static String[] loadWords() {
+        List<String> words = new ArrayList<>();
+        for (String name : SAMPLES) {
+            try (InputStream in = Corpus.class.getClassLoader().getResourceAsStream(name)) {
+                if (in == null) {
+                    throw new IllegalStateException("Sample " + name + " is not on the classpath");
+                }
+                String text = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+                words.addAll(Arrays.asList(text.trim().split("\\s+")));
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read sample " + name, e);
+            }
+        }
+        return words.toArray(new String[0]);
+    }
+}
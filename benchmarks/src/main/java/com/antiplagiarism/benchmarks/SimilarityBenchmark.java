@@ -0,0 +1,49 @@
+package com.antiplagiarism.benchmarks;
+
+import com.antiplagiarism.analysis.service.PlagiarismDetectionService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+// calculateSimilarity on one pair of documents: size x how much of the second document was rewritten
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class SimilarityBenchmark {
+
+    @Param({"1024", "16384", "131072", "1048576"})
+    public int size;
+
+    // 0.0 = exact copy, 0.2 = light rewrite, 1.0 = unrelated text
+    @Param({"0.0", "0.2", "1.0"})
+    public double rewritten;
+
+    private PlagiarismDetectionService service;
+    private ExecutorService executor;
+    private String original;
+    private String candidate;
+
+    @Setup
+    public void setUp() {
+        executor = Executors.newSingleThreadExecutor();
+        service = new PlagiarismDetectionService(executor, 0, new SimpleMeterRegistry());
+        original = Corpus.document(1, size);
+        candidate = Corpus.mutate(original, rewritten, 2);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public double calculateSimilarity() {
+        return service.calculateSimilarity(original, candidate);
+    }
+}
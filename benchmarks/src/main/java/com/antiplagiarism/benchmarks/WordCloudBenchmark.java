@@ -0,0 +1,41 @@
+package com.antiplagiarism.benchmarks;
+
+import com.antiplagiarism.analysis.service.WordCloudService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// generateWordCloud over Cyrillic text and its Latin transliteration
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(1)
+public class WordCloudBenchmark {
+
+    @Param({"10240", "1048576"})
+    public int size;
+
+    @Param({"cyrillic", "latin"})
+    public String alphabet;
+
+    @Param({"30"})
+    public int maxWords;
+
+    private WordCloudService service;
+    private String text;
+
+    @Setup
+    public void setUp() {
+        service = new WordCloudService();
+        String document = Corpus.document(7, size);
+        text = "latin".equals(alphabet) ? Corpus.latin(document) : document;
+    }
+
+    @Benchmark
+    public List<WordCloudService.WordFrequency> generateWordCloud() {
+        return service.generateWordCloud(text, maxWords);
+    }
+}
@@ -0,0 +1,56 @@
+package com.antiplagiarism.analysis.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class AnalysisExecutorConfig {
+
+    // fixed pool of analysis workers behind a bounded queue; a full queue rejects instead of growing.
+    // Workers mostly wait on the database and File Storing Service, so they are virtual threads;
+    // the CPU-bound comparisons run on the comparison pool
+    @Bean(destroyMethod = "shutdown")
+    public ThreadPoolExecutor analysisExecutor(@Value("${analysis.workers:4}") int workers,
+                                               @Value("${analysis.queue-capacity:500}") int queueCapacity,
+                                               MeterRegistry meterRegistry) {
+        return monitor(new ThreadPoolExecutor(workers, workers, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                Thread.ofVirtual().name("analysis-worker-", 1).factory(),
+                new ThreadPoolExecutor.AbortPolicy()), "analysis", meterRegistry);
+    }
+
+    // shared by all analysis workers for the pairwise comparisons, parallelism 0 means one thread per core;
+    // platform threads, the comparisons are CPU-bound
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService comparisonExecutor(@Value("${analysis.compare.parallelism:0}") int parallelism,
+                                              MeterRegistry meterRegistry) {
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        return monitor(Executors.newFixedThreadPool(threads, new CustomizableThreadFactory("comparison-")),
+                "comparison", meterRegistry);
+    }
+
+    // runs assignment cross-check jobs (virtual threads); each job parallelizes its comparisons on the comparison pool
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService crossCheckExecutor(@Value("${analysis.crosscheck.jobs:1}") int jobs,
+                                              MeterRegistry meterRegistry) {
+        return monitor(Executors.newFixedThreadPool(jobs, Thread.ofVirtual().name("cross-check-", 1).factory()),
+                "cross-check", meterRegistry);
+    }
+
+    // pool size, active threads, queued and completed tasks as executor.* meters; the pool itself is not wrapped
+    private static <T extends ExecutorService> T monitor(T executor, String name, MeterRegistry meterRegistry) {
+        new ExecutorServiceMetrics(executor, name, Tags.empty()).bindTo(meterRegistry);
+        return executor;
+    }
+}
@@ -0,0 +1,98 @@
+package com.antiplagiarism.analysis.config;
+
+import com.antiplagiarism.analysis.service.CircuitBreaker;
+import com.antiplagiarism.analysis.service.Downstream;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+// File Storing Service with its own client, limits and circuit breaker (downstream.file-storing.*)
+@Configuration
+public class DownstreamConfig {
+
+    private final Environment env;
+    private final RestTemplateBuilder builder;
+    private final MeterRegistry meterRegistry;
+
+    public DownstreamConfig(Environment env, RestTemplateBuilder builder, MeterRegistry meterRegistry) {
+        this.env = env;
+        this.builder = builder;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // a batch fetch reads up to 200 files in one response, the response timeout covers it
+    @Bean(destroyMethod = "close")
+    public Downstream fileStoring() {
+        return downstream("file-storing", "File Storing Service", 30000);
+    }
+
+    private Downstream downstream(String name, String displayName, long defaultResponseTimeoutMs) {
+        int maxConnections = property(name, "max-connections", Integer.class, 50);
+        long responseTimeoutMs = property(name, "response-timeout-ms", Long.class, defaultResponseTimeoutMs);
+        CloseableHttpClient httpClient = httpClient(name, maxConnections,
+                property(name, "connect-timeout-ms", Long.class, 2000L), responseTimeoutMs,
+                property(name, "pool-timeout-ms", Long.class, 5000L),
+                property(name, "idle-timeout-seconds", Long.class, 15L));
+        // built by the auto-configured builder, so outgoing calls are timed as http.client.requests
+        RestTemplate restTemplate = builder
+                .requestFactory(() -> new HttpComponentsClientHttpRequestFactory(httpClient))
+                .build();
+        CircuitBreaker breaker = new CircuitBreaker(
+                property(name, "circuit.window", Integer.class, 50),
+                property(name, "circuit.min-calls", Integer.class, 20),
+                property(name, "circuit.failure-rate", Double.class, 0.5),
+                property(name, "circuit.open-ms", Long.class, 10000L),
+                property(name, "circuit.trial-calls", Integer.class, 5));
+        // the bulkhead is not larger than the pool, so a permitted call never waits for a connection
+        return new Downstream(name, displayName, restTemplate, httpClient,
+                Math.min(maxConnections, property(name, "max-concurrent", Integer.class, maxConnections)),
+                property(name, "bulkhead-wait-ms", Long.class, 2000L),
+                property(name, "slow-call-ms", Long.class, responseTimeoutMs),
+                breaker, meterRegistry);
+    }
+
+    // keep-alive connections to one service; idle ones are closed before the server drops them
+    private CloseableHttpClient httpClient(String name, int maxConnections, long connectTimeoutMs,
+                                           long responseTimeoutMs, long poolTimeoutMs, long idleTimeoutSeconds) {
+        PoolingHttpClientConnectionManager connections = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnections)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(2))
+                        .build())
+                .build();
+        // leased, available and pending connections as httpcomponents.httpclient.pool.* meters
+        new PoolingHttpClientConnectionManagerMetricsBinder(connections, name).bindTo(meterRegistry);
+        return HttpClients.custom()
+                .setConnectionManager(connections)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(responseTimeoutMs))
+                        .setDefaultKeepAlive(idleTimeoutSeconds, TimeUnit.SECONDS)
+                        .build())
+                .evictIdleConnections(TimeValue.ofSeconds(idleTimeoutSeconds))
+                .evictExpiredConnections()
+                .build();
+    }
+
+    private <T> T property(String downstream, String key, Class<T> type, T defaultValue) {
+        return env.getProperty("downstream." + downstream + "." + key, type, defaultValue);
+    }
+}
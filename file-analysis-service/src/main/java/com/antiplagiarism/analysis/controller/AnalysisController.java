@@ -1,9 +1,17 @@
 package com.antiplagiarism.analysis.controller;
 
+import com.antiplagiarism.analysis.entity.CrossCheckJob;
 import com.antiplagiarism.analysis.entity.Report;
 import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.service.AnalysisJobQueue;
+import com.antiplagiarism.analysis.service.ArtifactStore;
 import com.antiplagiarism.analysis.service.AnalysisService;
+import com.antiplagiarism.analysis.service.AssignmentSettingsService;
+import com.antiplagiarism.analysis.service.CrossCheckService;
+import com.antiplagiarism.analysis.service.FileContentCache;
+import com.antiplagiarism.analysis.service.ReportMatchStore;
 import com.antiplagiarism.analysis.service.WordCloudService;
+import com.antiplagiarism.analysis.service.WordCloudStore;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.http.HttpStatus;
@@ -11,6 +19,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -20,16 +29,29 @@ import java.util.Map;
 public class AnalysisController {
 
     private final AnalysisService analysisService;
-    private final WordCloudService wordCloudService;
+    private final AnalysisJobQueue jobQueue;
+    private final FileContentCache contentCache;
+    private final ArtifactStore artifactStore;
+    private final WordCloudStore wordCloudStore;
+    private final CrossCheckService crossCheckService;
+    private final AssignmentSettingsService settingsService;
 
-    public AnalysisController(AnalysisService analysisService, WordCloudService wordCloudService) {
+    public AnalysisController(AnalysisService analysisService, AnalysisJobQueue jobQueue,
+                              FileContentCache contentCache, ArtifactStore artifactStore,
+                              WordCloudStore wordCloudStore, CrossCheckService crossCheckService,
+                              AssignmentSettingsService settingsService) {
         this.analysisService = analysisService;
-        this.wordCloudService = wordCloudService;
+        this.jobQueue = jobQueue;
+        this.contentCache = contentCache;
+        this.artifactStore = artifactStore;
+        this.wordCloudStore = wordCloudStore;
+        this.crossCheckService = crossCheckService;
+        this.settingsService = settingsService;
     }
 
     @PostMapping
     @Operation(summary = "Create work and start analysis", 
-               description = "Register a new work submission and initiate plagiarism check")
+               description = "Register a new work submission and queue a plagiarism check")
     public ResponseEntity<?> createWork(@RequestBody Map<String, String> request) {
         String fileId = request.get("fileId");
         String studentName = request.get("studentName");
@@ -40,22 +62,174 @@ public class AnalysisController {
         }
 
         try {
-            Work work = analysisService.createWorkAndAnalyze(fileId, studentName, assignmentId);
-            
+            Work work = analysisService.submitWork(fileId, studentName, assignmentId, request.get("contentHash"));
+            jobQueue.wakeUp();
+
             Map<String, Object> resp = new HashMap<>();
             resp.put("workId", work.getId());
             resp.put("studentName", work.getStudentName());
             resp.put("assignmentId", work.getAssignmentId());
             resp.put("submittedAt", work.getSubmittedAt());
-            resp.put("status", "Analysis started");
-            
-            return ResponseEntity.ok(resp);
+            resp.put("status", "Analysis queued");
+
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
                     .body("Failed to start analysis: " + e.getMessage());
         }
     }
 
+    @PostMapping("/works/{workId}/reanalyze")
+    @Operation(summary = "Re-run analysis of a work",
+               description = "Queues a new report; pair scores stored by earlier runs are reused")
+    public ResponseEntity<?> reanalyzeWork(@PathVariable String workId) {
+        try {
+            Report report = analysisService.reanalyze(workId);
+            jobQueue.wakeUp();
+
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("workId", workId);
+            resp.put("reportId", report.getId());
+            resp.put("status", "Analysis queued");
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Failed to queue analysis: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/assignments/{assignmentId}/reanalyze")
+    @Operation(summary = "Re-run analysis of an assignment",
+               description = "Queues a new report for every work without a pending one; only missing or stale pairs are compared")
+    public ResponseEntity<?> reanalyzeAssignment(@PathVariable String assignmentId) {
+        try {
+            int queued = analysisService.reanalyzeAssignment(assignmentId);
+            jobQueue.wakeUp();
+
+            Map<String, Object> resp = new HashMap<>();
+            resp.put("assignmentId", assignmentId);
+            resp.put("queued", queued);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(resp);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body("Failed to queue analysis: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/assignments/{assignmentId}/rescore")
+    @Operation(summary = "Re-apply thresholds to an assignment",
+               description = "Rebuilds the latest reports from stored pair scores with the configured thresholds")
+    public ResponseEntity<?> rescoreAssignment(@PathVariable String assignmentId) {
+        try {
+            Map<String, Integer> counts = analysisService.rescoreAssignment(assignmentId);
+            if (counts.get("queued") > 0) {
+                jobQueue.wakeUp();
+            }
+
+            Map<String, Object> resp = new HashMap<>(counts);
+            resp.put("assignmentId", assignmentId);
+            return ResponseEntity.ok(resp);
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to rescore assignment: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/assignments/{assignmentId}/settings")
+    @Operation(summary = "Get assignment settings",
+               description = "Similarity engine and corpus search of the assignment, and the available engines")
+    public ResponseEntity<?> getSettings(@PathVariable String assignmentId) {
+        try {
+            return ResponseEntity.ok(settingsService.describe(assignmentId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to read settings: " + e.getMessage());
+        }
+    }
+
+    @PutMapping("/assignments/{assignmentId}/settings")
+    @Operation(summary = "Change assignment settings",
+               description = "Selects the similarity engine and opts in to searching other assignments; " +
+                       "takes effect for new analyses, rescore and cross-checks")
+    public ResponseEntity<?> updateSettings(@PathVariable String assignmentId,
+                                            @RequestBody Map<String, Object> request) {
+        Object engine = request.get("engine");
+        Object corpusSearch = request.get("corpusSearch");
+        if (engine == null && corpusSearch == null) {
+            return ResponseEntity.badRequest().body("Missing required fields");
+        }
+        try {
+            settingsService.update(assignmentId, engine == null ? null : engine.toString(),
+                    corpusSearch == null ? null : Boolean.valueOf(corpusSearch.toString()));
+            return ResponseEntity.ok(settingsService.describe(assignmentId));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body("Failed to update settings: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/assignments/{assignmentId}/cross-check")
+    @Operation(summary = "Start all-pairs check of an assignment",
+               description = "Compares every candidate pair of works regardless of submission order and clusters similar works")
+    public ResponseEntity<?> startCrossCheck(@PathVariable String assignmentId) {
+        try {
+            CrossCheckJob job = crossCheckService.start(assignmentId);
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(toResponse(job, false));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Failed to start cross-check: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/cross-checks/{jobId}")
+    @Operation(summary = "Cross-check progress", description = "Status, progress and, once completed, clusters of similar works")
+    public ResponseEntity<?> getCrossCheck(@PathVariable String jobId) {
+        try {
+            return ResponseEntity.ok(toResponse(crossCheckService.getJob(jobId), true));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Cross-check not found: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/cross-checks/{jobId}/pairs")
+    @Operation(summary = "Cross-check similarity matrix",
+               description = "Scored pairs of the assignment at or above minScore, most similar first")
+    public ResponseEntity<?> getCrossCheckPairs(@PathVariable String jobId,
+                                                @RequestParam(defaultValue = "50") double minScore,
+                                                @RequestParam(defaultValue = "1000") int limit) {
+        try {
+            CrossCheckJob job = crossCheckService.getJob(jobId);
+            return ResponseEntity.ok(crossCheckService.getPairs(job, minScore, limit));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body("Cross-check not found: " + e.getMessage());
+        }
+    }
+
+    private Map<String, Object> toResponse(CrossCheckJob job, boolean withClusters) {
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("jobId", job.getId());
+        resp.put("assignmentId", job.getAssignmentId());
+        resp.put("status", job.getStatus());
+        resp.put("engine", job.getEngine());
+        resp.put("totalWorks", job.getTotalWorks());
+        resp.put("processedWorks", job.getProcessedWorks());
+        if (job.getTotalWorks() != null && job.getTotalWorks() > 0) {
+            resp.put("progressPercent", Math.round(job.getProcessedWorks() * 1000.0 / job.getTotalWorks()) / 10.0);
+        }
+        resp.put("comparedPairs", job.getComparedPairs());
+        resp.put("reusedPairs", job.getReusedPairs());
+        resp.put("startedAt", job.getStartedAt());
+        resp.put("completedAt", job.getCompletedAt());
+        if (job.getError() != null) {
+            resp.put("error", job.getError());
+        }
+        if (withClusters) {
+            resp.put("clusters", crossCheckService.getClusters(job));
+        }
+        return resp;
+    }
+
     @GetMapping("/reports/{workId}")
     @Operation(summary = "Get reports for a work", 
                description = "Retrieve all plagiarism reports for a specific work")
@@ -72,6 +246,31 @@ public class AnalysisController {
         }
     }
 
+    @GetMapping("/matches")
+    @Operation(summary = "Search report matches",
+               description = "Page of matches from report_matches, most similar first; all filters are optional. " +
+                       "studentName is the analyzed work's student, matchedStudentName the student of the matched " +
+                       "earlier work. Only each work's latest report unless latestOnly=false")
+    public ResponseEntity<?> findMatches(@RequestParam(required = false) String assignmentId,
+                                         @RequestParam(required = false) String workId,
+                                         @RequestParam(required = false) String matchedWorkId,
+                                         @RequestParam(required = false) String studentName,
+                                         @RequestParam(required = false) String matchedStudentName,
+                                         @RequestParam(required = false) String verdict,
+                                         @RequestParam(defaultValue = "0") double minSimilarity,
+                                         @RequestParam(defaultValue = "true") boolean latestOnly,
+                                         @RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "50") int size) {
+        try {
+            ReportMatchStore.MatchFilter filter = new ReportMatchStore.MatchFilter(assignmentId, workId,
+                    matchedWorkId, studentName, matchedStudentName, verdict, minSimilarity, latestOnly);
+            return ResponseEntity.ok(analysisService.findMatches(filter, page, size));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body("Failed to fetch matches: " + e.getMessage());
+        }
+    }
+
     @GetMapping("/reports/work/{reportId}")
     @Operation(summary = "Get specific report", description = "Retrieve a single report by its ID")
     public ResponseEntity<?> getReport(@PathVariable String reportId) {
@@ -91,12 +290,7 @@ public class AnalysisController {
             @PathVariable String workId,
             @RequestParam(defaultValue = "30") int maxWords) {
         try {
-            String content = analysisService.getWorkContent(workId);
-            if (content == null || content.isEmpty()) {
-                return ResponseEntity.status(HttpStatus.NOT_FOUND).body("Work content not found");
-            }
-
-            WordCloudService.WordCloudResult result = wordCloudService.generateWordCloudWithSizes(content, maxWords);
+            WordCloudService.WordCloudResult result = wordCloudStore.get(workId, maxWords);
 
             Map<String, Object> resp = new HashMap<>();
             resp.put("workId", workId);
@@ -111,6 +305,23 @@ public class AnalysisController {
         }
     }
 
+    @GetMapping("/queue")
+    @Operation(summary = "Analysis queue stats",
+               description = "Pending jobs in the database, local queue depth, capacity and worker usage")
+    public ResponseEntity<Map<String, Object>> getQueueStats() {
+        return ResponseEntity.ok(jobQueue.getStats());
+    }
+
+    @GetMapping("/cache")
+    @Operation(summary = "Cache stats", description = "Hit/miss/eviction counters of the file content, artifact and word cloud caches")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        Map<String, Object> resp = new HashMap<>();
+        resp.put("content", contentCache.getStats());
+        resp.put("artifacts", artifactStore.getStats());
+        resp.put("wordClouds", wordCloudStore.getStats());
+        return ResponseEntity.ok(resp);
+    }
+
     @GetMapping("/health")
     @Operation(summary = "Health check", description = "Check if File Analysis Service is running")
     public ResponseEntity<String> health() {
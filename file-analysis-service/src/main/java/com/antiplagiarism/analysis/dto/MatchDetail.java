@@ -4,6 +4,8 @@ import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
+import java.util.List;
+
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -12,5 +14,10 @@ public class MatchDetail {
     private String studentName;
     private Double similarityPercent;
     private String submittedAt;
+    // assignment of the matched work, differs from the report's one for corpus matches
+    private String assignmentId;
+    // UNRESOLVED: the comparison timed out and similarityPercent is only the pair's upper bound
     private String verdict;
+    // longest first; null for matches from before passages were extracted
+    private List<MatchPassage> passages;
 }
@@ -0,0 +1,22 @@
+package com.antiplagiarism.analysis.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// copied passage: [offset, offset + length) of the analyzed work matches
+// [matchedOffset, matchedOffset + matchedLength) of the matched one, in normalized text;
+// the raw* fields give the same ranges in the uploaded files (UTF-16 chars), null when a file is unavailable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MatchPassage {
+    private int offset;
+    private int length;
+    private int matchedOffset;
+    private int matchedLength;
+    private Integer rawOffset;
+    private Integer rawLength;
+    private Integer matchedRawOffset;
+    private Integer matchedRawLength;
+}
@@ -13,5 +13,7 @@ public class PlagiarismResult {
     private Double originalityPercent;
     private Boolean plagiarismDetected;
     private String verdict;
+    // some pairs timed out, they are the UNRESOLVED matches
+    private Boolean incomplete;
     private List<MatchDetail> matches;
 }
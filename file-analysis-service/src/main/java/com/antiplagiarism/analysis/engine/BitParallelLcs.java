@@ -0,0 +1,221 @@
+package com.antiplagiarism.analysis.engine;
+
+import java.util.Arrays;
+import java.util.concurrent.CancellationException;
+
+/**
+ * LCS length using the bit-vector algorithm (Allison-Dix / Hyyro).
+ * The shorter string (length m) is encoded as match masks, 64 positions per long, and the longer
+ * string is scanned one char at a time with word-wide add/or operations,
+ * so the work is about m*n/64 word operations instead of m*n cell updates.
+ * Memory is sigma*ceil(m/64) longs of masks for the sigma distinct symbols of the shorter string,
+ * plus an O(m) symbol table; nothing depends on the longer string or on the size of the alphabet.
+ */
+public final class BitParallelLcs {
+
+    private BitParallelLcs() {
+    }
+
+    private static final int DEADLINE_CHECK_MASK = 1023;
+
+    public static int length(CharSequence s1, CharSequence s2) {
+        return length(s1, s2, 0);
+    }
+
+    // timeoutNanos <= 0 means no limit; otherwise throws CancellationException once it is exceeded
+    public static int length(CharSequence s1, CharSequence s2, long timeoutNanos) {
+        CharSequence a = s1.length() <= s2.length() ? s1 : s2; // encoded as bit masks
+        CharSequence b = a == s1 ? s2 : s1;                    // scanned
+
+        // common prefix / suffix are always part of some LCS, no need to feed them to the kernel
+        int aEnd = a.length();
+        int bEnd = b.length();
+        int prefix = 0;
+        while (prefix < aEnd && a.charAt(prefix) == b.charAt(prefix)) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < aEnd - prefix && a.charAt(aEnd - 1 - suffix) == b.charAt(bEnd - 1 - suffix)) {
+            suffix++;
+        }
+
+        int m = aEnd - prefix - suffix;
+        if (m == 0) {
+            return prefix + suffix;
+        }
+        return prefix + suffix + kernel(a, prefix, aEnd - suffix, b, prefix, bEnd - suffix, timeoutNanos);
+    }
+
+    private static int kernel(CharSequence a, int aFrom, int aTo, CharSequence b, int bFrom, int bTo,
+                              long timeoutNanos) {
+        long start = System.nanoTime();
+        int m = aTo - aFrom;
+        int words = (m + 63) >>> 6;
+
+        // compact alphabet: every distinct char of a gets a mask row
+        SymbolTable symbols = new SymbolTable(Math.min(m, Character.MAX_VALUE + 1));
+        for (int i = aFrom; i < aTo; i++) {
+            symbols.add(a.charAt(i));
+        }
+
+        long[] masks = new long[Math.multiplyExact(symbols.size(), words)];
+        for (int i = 0; i < m; i++) {
+            masks[(symbols.slot(a.charAt(aFrom + i)) - 1) * words + (i >>> 6)] |= 1L << (i & 63);
+        }
+
+        // zero bits of v mark positions of a taken into the current LCS
+        long[] v = new long[words];
+        Arrays.fill(v, -1L);
+
+        for (int j = bFrom; j < bTo; j++) {
+            if (((j - bFrom) & DEADLINE_CHECK_MASK) == 0) {
+                checkDeadline(start, timeoutNanos);
+            }
+            int s = symbols.slot(b.charAt(j));
+            if (s == 0) {
+                continue; // no match anywhere in a, v stays the same
+            }
+            step(v, masks, (s - 1) * words, words);
+        }
+        return m - ones(v, m);
+    }
+
+    /**
+     * Same as {@link #length(CharSequence, CharSequence, long)} over sequences of int symbols
+     * (word token ids).
+     */
+    public static int length(int[] s1, int[] s2, long timeoutNanos) {
+        int[] a = s1.length <= s2.length ? s1 : s2;
+        int[] b = a == s1 ? s2 : s1;
+
+        int aEnd = a.length;
+        int bEnd = b.length;
+        int prefix = 0;
+        while (prefix < aEnd && a[prefix] == b[prefix]) {
+            prefix++;
+        }
+        int suffix = 0;
+        while (suffix < aEnd - prefix && a[aEnd - 1 - suffix] == b[bEnd - 1 - suffix]) {
+            suffix++;
+        }
+
+        int m = aEnd - prefix - suffix;
+        if (m == 0) {
+            return prefix + suffix;
+        }
+        return prefix + suffix + kernel(a, prefix, aEnd - suffix, b, prefix, bEnd - suffix, timeoutNanos);
+    }
+
+    private static int kernel(int[] a, int aFrom, int aTo, int[] b, int bFrom, int bTo, long timeoutNanos) {
+        long start = System.nanoTime();
+        int m = aTo - aFrom;
+        int words = (m + 63) >>> 6;
+
+        SymbolTable symbols = new SymbolTable(m);
+        int[] aSlots = new int[m];
+        for (int i = 0; i < m; i++) {
+            aSlots[i] = symbols.add(a[aFrom + i]);
+        }
+
+        long[] masks = new long[Math.multiplyExact(symbols.size(), words)];
+        for (int i = 0; i < m; i++) {
+            masks[(aSlots[i] - 1) * words + (i >>> 6)] |= 1L << (i & 63);
+        }
+
+        long[] v = new long[words];
+        Arrays.fill(v, -1L);
+
+        for (int j = bFrom; j < bTo; j++) {
+            if (((j - bFrom) & DEADLINE_CHECK_MASK) == 0) {
+                checkDeadline(start, timeoutNanos);
+            }
+            int s = symbols.slot(b[j]);
+            if (s != 0) {
+                step(v, masks, (s - 1) * words, words);
+            }
+        }
+        return m - ones(v, m);
+    }
+
+    // one column of the bit-vector recurrence: v absorbs the match mask starting at masks[base]
+    private static void step(long[] v, long[] masks, int base, int words) {
+        long carry = 0;
+        for (int k = 0; k < words; k++) {
+            long x = v[k];
+            long u = x & masks[base + k];
+            long sum = x + u + carry;
+            // u is a subset of x, so the usual carry-out formula reduces to this
+            carry = (u | (x & ~sum)) >>> 63;
+            v[k] = sum | (x ^ u);
+        }
+    }
+
+    // one bits among the first m positions of v, i.e. positions of a not in the LCS
+    private static int ones(long[] v, int m) {
+        int words = v.length;
+        int ones = 0;
+        for (int k = 0; k < words - 1; k++) {
+            ones += Long.bitCount(v[k]);
+        }
+        int tail = m & 63;
+        long lastMask = tail == 0 ? -1L : (1L << tail) - 1;
+        ones += Long.bitCount(v[words - 1] & lastMask);
+        return ones;
+    }
+
+    // symbol -> mask row (1-based) for the distinct symbols of the encoded string, linear probing;
+    // sized by that string's length, so small pairs get small tables
+    private static final class SymbolTable {
+        private final int[] keys;
+        private final int[] slots;
+        private final int mask;
+        private int size;
+
+        SymbolTable(int symbols) {
+            int capacity = Integer.highestOneBit(Math.max(2, symbols) * 2 - 1) << 1;
+            this.keys = new int[capacity];
+            this.slots = new int[capacity];
+            this.mask = capacity - 1;
+        }
+
+        int add(int symbol) {
+            int h = find(symbol);
+            if (slots[h] == 0) {
+                keys[h] = symbol;
+                slots[h] = ++size;
+            }
+            return slots[h];
+        }
+
+        // 0 if the symbol is not in the table
+        int slot(int symbol) {
+            return slots[find(symbol)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        private int find(int symbol) {
+            int h = mix(symbol) & mask;
+            while (slots[h] != 0 && keys[h] != symbol) {
+                h = (h + 1) & mask;
+            }
+            return h;
+        }
+
+        private static int mix(int h) {
+            h *= 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+
+    private static void checkDeadline(long start, long timeoutNanos) {
+        if (Thread.currentThread().isInterrupted()) {
+            throw new CancellationException("LCS interrupted");
+        }
+        if (timeoutNanos > 0 && System.nanoTime() - start > timeoutNanos) {
+            throw new CancellationException("LCS timed out");
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package com.antiplagiarism.analysis.engine;
+
+// similarity = (2 * LCS) / (len1 + len2) * 100 over the normalized characters
+public final class CharLcsEngine implements SimilarityEngine {
+
+    public static final String NAME = "char-lcs";
+
+    @Override
+    public String name() { return NAME; }
+
+    @Override
+    public String id() { return "char-lcs/1"; }
+
+    // LCS <= min(lengths) and the character histogram bound
+    @Override
+    public double upperBound(TextArtifact a, TextArtifact b) {
+        int n1 = a.getNormalized().length();
+        int n2 = b.getNormalized().length();
+        if (n1 == 0 || n2 == 0) {
+            return 0.0;
+        }
+        int lcsBound = Math.min(Math.min(n1, n2), TextArtifact.lcsUpperBound(a, b));
+        return SimilarityEngine.round((2.0 * lcsBound) / (n1 + n2) * 100);
+    }
+
+    @Override
+    public double similarity(TextArtifact a, TextArtifact b, long timeoutNanos) {
+        String norm1 = a.getNormalized();
+        String norm2 = b.getNormalized();
+        if (norm1.isEmpty() || norm2.isEmpty()) {
+            return 0.0;
+        }
+        int lcs = BitParallelLcs.length(norm1, norm2, timeoutNanos);
+        return SimilarityEngine.round((2.0 * lcs) / (norm1.length() + norm2.length()) * 100);
+    }
+
+    @Override
+    public long cost(TextArtifact a, TextArtifact b) {
+        return (long) a.getNormalized().length() * b.getNormalized().length();
+    }
+}
@@ -0,0 +1,164 @@
+package com.antiplagiarism.analysis.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Copied passages between a document and the documents it matched, by seed-and-extend:
+ * winnowed k-grams shared by both texts are the seeds, each seed is extended left and right
+ * to a maximal common substring, overlapping runs are dropped (longest kept) and runs that
+ * follow each other with small gaps in both texts are merged into one passage.
+ * Memory is linear in the fingerprints of the two texts, no alignment matrix is built.
+ * Offsets and lengths are in normalized text.
+ */
+public final class PassageMatcher {
+
+    // a k-gram repeated more often than this (boilerplate) seeds only its first occurrences
+    private static final int MAX_OCCURRENCES = 8;
+
+    private final String text;
+    private final int k;
+    private final int window;
+    // fingerprint -> positions in text
+    private final Map<Long, int[]> seeds = new HashMap<>();
+
+    // indexes the analyzed document once for all of its matches
+    public PassageMatcher(String text, int k, int window) {
+        this.text = text;
+        this.k = k;
+        this.window = window;
+        if (text.length() < k) {
+            return;
+        }
+        long[] hashes = Winnowing.kgramHashes(text, k);
+        for (int pos : Winnowing.select(hashes, window)) {
+            seeds.merge(hashes[pos], new int[]{pos}, (old, add) ->
+                    old.length >= MAX_OCCURRENCES ? old : append(old, add[0]));
+        }
+    }
+
+    /**
+     * Passages of at least minLength chars shared with other, merged across gaps of up to maxGap
+     * chars in each text, longest first, at most maxPassages of them.
+     */
+    public List<Passage> match(String other, int minLength, int maxGap, int maxPassages) {
+        if (seeds.isEmpty() || other.length() < k) {
+            return List.of();
+        }
+        long[] hashes = Winnowing.kgramHashes(other, k);
+        List<Passage> runs = new ArrayList<>();
+        // furthest position of `other` covered on each diagonal, seeds inside a known run are skipped
+        Map<Integer, Integer> covered = new HashMap<>();
+        for (int j : Winnowing.select(hashes, window)) {
+            int[] positions = seeds.get(hashes[j]);
+            if (positions == null) {
+                continue;
+            }
+            for (int i : positions) {
+                int diagonal = j - i;
+                Integer end = covered.get(diagonal);
+                if ((end != null && j < end) || !text.regionMatches(i, other, j, k)) {
+                    continue;
+                }
+                int from = 0;
+                while (i - from > 0 && j - from > 0 && text.charAt(i - from - 1) == other.charAt(j - from - 1)) {
+                    from++;
+                }
+                int to = k;
+                while (i + to < text.length() && j + to < other.length()
+                        && text.charAt(i + to) == other.charAt(j + to)) {
+                    to++;
+                }
+                covered.put(diagonal, j + to);
+                runs.add(new Passage(i - from, from + to, j - from, from + to));
+            }
+        }
+        return merge(disjoint(runs), minLength, maxGap, maxPassages);
+    }
+
+    // longest runs first, a run overlapping an accepted one in either text is dropped
+    private static List<Passage> disjoint(List<Passage> runs) {
+        runs.sort(Comparator.comparingInt(Passage::getLength).reversed());
+        TreeMap<Integer, Integer> taken = new TreeMap<>();
+        TreeMap<Integer, Integer> takenMatched = new TreeMap<>();
+        List<Passage> accepted = new ArrayList<>();
+        for (Passage run : runs) {
+            if (overlaps(taken, run.getOffset(), run.getLength())
+                    || overlaps(takenMatched, run.getMatchedOffset(), run.getMatchedLength())) {
+                continue;
+            }
+            taken.put(run.getOffset(), run.getOffset() + run.getLength());
+            takenMatched.put(run.getMatchedOffset(), run.getMatchedOffset() + run.getMatchedLength());
+            accepted.add(run);
+        }
+        accepted.sort(Comparator.comparingInt(Passage::getOffset));
+        return accepted;
+    }
+
+    private static boolean overlaps(TreeMap<Integer, Integer> taken, int offset, int length) {
+        Map.Entry<Integer, Integer> before = taken.floorEntry(offset);
+        if (before != null && before.getValue() > offset) {
+            return true;
+        }
+        Integer after = taken.ceilingKey(offset);
+        return after != null && after < offset + length;
+    }
+
+    // runs in order in both texts with small gaps become one passage (a copied paragraph with edits)
+    private static List<Passage> merge(List<Passage> runs, int minLength, int maxGap, int maxPassages) {
+        List<Passage> passages = new ArrayList<>();
+        Passage current = null;
+        for (Passage run : runs) {
+            if (current != null) {
+                int gap = run.getOffset() - (current.getOffset() + current.getLength());
+                int matchedGap = run.getMatchedOffset() - (current.getMatchedOffset() + current.getMatchedLength());
+                if (gap <= maxGap && matchedGap >= 0 && matchedGap <= maxGap) {
+                    current = new Passage(current.getOffset(), run.getOffset() + run.getLength() - current.getOffset(),
+                            current.getMatchedOffset(),
+                            run.getMatchedOffset() + run.getMatchedLength() - current.getMatchedOffset());
+                    continue;
+                }
+                passages.add(current);
+            }
+            current = run;
+        }
+        if (current != null) {
+            passages.add(current);
+        }
+        passages.removeIf(p -> Math.min(p.getLength(), p.getMatchedLength()) < minLength);
+        passages.sort(Comparator.comparingInt(Passage::getLength).reversed());
+        return passages.size() > maxPassages ? new ArrayList<>(passages.subList(0, maxPassages)) : passages;
+    }
+
+    private static int[] append(int[] values, int value) {
+        int[] out = Arrays.copyOf(values, values.length + 1);
+        out[values.length] = value;
+        return out;
+    }
+
+    // [offset, offset + length) of the analyzed text matches
+    // [matchedOffset, matchedOffset + matchedLength) of the other
+    public static final class Passage {
+        private final int offset;
+        private final int length;
+        private final int matchedOffset;
+        private final int matchedLength;
+
+        public Passage(int offset, int length, int matchedOffset, int matchedLength) {
+            this.offset = offset;
+            this.length = length;
+            this.matchedOffset = matchedOffset;
+            this.matchedLength = matchedLength;
+        }
+
+        public int getOffset() { return offset; }
+        public int getLength() { return length; }
+        public int getMatchedOffset() { return matchedOffset; }
+        public int getMatchedLength() { return matchedLength; }
+    }
+}
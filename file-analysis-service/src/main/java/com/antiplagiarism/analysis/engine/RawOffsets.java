@@ -0,0 +1,87 @@
+package com.antiplagiarism.analysis.engine;
+
+import java.util.Arrays;
+
+/**
+ * Maps offsets in the normalized text back to the raw text it was built from, so that passages
+ * can be shown in the document as it was uploaded. Replays {@link TextArtifact#normalize} one
+ * code point at a time: lower case, whitespace runs to one space, trim. Raw offsets are chars
+ * (UTF-16 code units) of the file content decoded as UTF-8.
+ */
+public final class RawOffsets {
+
+    // raw range of normalized char i: [start[i], end[i]); a collapsed space covers its whole run
+    private final int[] start;
+    private final int[] end;
+
+    private RawOffsets(int[] start, int[] end) {
+        this.start = start;
+        this.end = end;
+    }
+
+    // null if the replay does not line up with normalized (the raw text is not the one it was built from)
+    public static RawOffsets of(String raw, String normalized) {
+        int[] start = new int[raw.length() + 1];
+        int[] end = new int[raw.length() + 1];
+        // chars that trim() drops at either end: the collapsed spaces and control chars
+        boolean[] blank = new boolean[raw.length() + 1];
+        int count = 0;
+        boolean inSpace = false;
+        for (int i = 0; i < raw.length(); ) {
+            int cp = raw.codePointAt(i);
+            int next = i + Character.charCount(cp);
+            if (count + 2 > start.length) {
+                start = Arrays.copyOf(start, start.length * 2);
+                end = Arrays.copyOf(end, end.length * 2);
+                blank = Arrays.copyOf(blank, blank.length * 2);
+            }
+            if (isSpace(cp)) {
+                if (inSpace) {
+                    end[count - 1] = next;
+                } else {
+                    start[count] = i;
+                    end[count] = next;
+                    blank[count++] = true;
+                    inSpace = true;
+                }
+            } else {
+                // String.toLowerCase maps U+0130 to two chars, every other code point keeps its length
+                int chars = cp == 0x130 ? 2 : Character.charCount(Character.toLowerCase(cp));
+                for (int k = 0; k < chars; k++) {
+                    start[count] = i;
+                    end[count] = next;
+                    blank[count++] = cp <= ' ';
+                }
+                inSpace = false;
+            }
+            i = next;
+        }
+        int from = 0;
+        while (from < count && blank[from]) {
+            from++;
+        }
+        int to = count;
+        while (to > from && blank[to - 1]) {
+            to--;
+        }
+        if (to - from != normalized.length()) {
+            return null;
+        }
+        return new RawOffsets(Arrays.copyOfRange(start, from, to), Arrays.copyOfRange(end, from, to));
+    }
+
+    // raw offset where normalized [offset, offset + length) starts
+    public int start(int offset) {
+        return start[offset];
+    }
+
+    // raw length covering normalized [offset, offset + length)
+    public int length(int offset, int length) {
+        return length == 0 ? 0 : end[offset + length - 1] - start[offset];
+    }
+
+    // the whitespace that normalize() collapses, as matched by \s
+    private static boolean isSpace(int cp) {
+        return cp == ' ' || cp == '\t' || cp == '\n' || cp == 0x0B || cp == '\f' || cp == '\r';
+    }
+}
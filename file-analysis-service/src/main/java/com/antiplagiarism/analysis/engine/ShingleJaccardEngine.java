@@ -0,0 +1,56 @@
+package com.antiplagiarism.analysis.engine;
+
+/**
+ * Jaccard index of the word shingle sets (TextArtifact.SHINGLE_SIZE words each), * 100.
+ * Order-insensitive beyond the shingle, so reordered paragraphs still match; linear in the
+ * number of shingles.
+ */
+public final class ShingleJaccardEngine implements SimilarityEngine {
+
+    public static final String NAME = "shingle-jaccard";
+
+    @Override
+    public String name() { return NAME; }
+
+    @Override
+    public String id() { return "shingle-jaccard/" + TextArtifact.SHINGLE_SIZE; }
+
+    // |A ∩ B| / |A ∪ B| <= min(|A|, |B|) / max(|A|, |B|)
+    @Override
+    public double upperBound(TextArtifact a, TextArtifact b) {
+        int n1 = a.shingles().length;
+        int n2 = b.shingles().length;
+        if (n1 == 0 || n2 == 0) {
+            return 0.0;
+        }
+        return SimilarityEngine.round((double) Math.min(n1, n2) / Math.max(n1, n2) * 100);
+    }
+
+    @Override
+    public double similarity(TextArtifact a, TextArtifact b, long timeoutNanos) {
+        long[] x = a.shingles();
+        long[] y = b.shingles();
+        if (x.length == 0 || y.length == 0) {
+            return 0.0;
+        }
+        int common = 0;
+        int i = 0, j = 0;
+        while (i < x.length && j < y.length) {
+            if (x[i] < y[j]) {
+                i++;
+            } else if (x[i] > y[j]) {
+                j++;
+            } else {
+                common++;
+                i++;
+                j++;
+            }
+        }
+        return SimilarityEngine.round((double) common / (x.length + y.length - common) * 100);
+    }
+
+    @Override
+    public long cost(TextArtifact a, TextArtifact b) {
+        return (long) a.shingles().length + b.shingles().length;
+    }
+}
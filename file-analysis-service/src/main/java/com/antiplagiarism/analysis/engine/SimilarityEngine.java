@@ -0,0 +1,26 @@
+package com.antiplagiarism.analysis.engine;
+
+/**
+ * One way of scoring a pair of documents, 0..100. The name selects the engine (per assignment);
+ * the id is stored with every pair score, so it must change whenever the engine's scores would.
+ */
+public interface SimilarityEngine {
+
+    String name();
+
+    String id();
+
+    // cheap score that similarity() never exceeds, rounded the same way
+    double upperBound(TextArtifact a, TextArtifact b);
+
+    // timeoutNanos <= 0 means no limit; otherwise throws CancellationException once it is exceeded
+    double similarity(TextArtifact a, TextArtifact b, long timeoutNanos);
+
+    // amount of work similarity() does for the pair (matrix cells, shingles), for metrics
+    long cost(TextArtifact a, TextArtifact b);
+
+    // percent rounded to two decimals, as scores are stored and reported
+    static double round(double percent) {
+        return Math.round(percent * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,196 @@
+package com.antiplagiarism.analysis.engine;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+/**
+ * Everything the comparisons need from one document, computed once per work:
+ * normalized text, word token ids, winnowed fingerprints and a SHA-256 of the raw content.
+ */
+public final class TextArtifact {
+
+    // words per shingle of shingles()
+    public static final int SHINGLE_SIZE = 3;
+
+    private final String normalized;
+    private final int[] tokens;
+    private final long[] fingerprints;
+    private final String contentHash;
+    // (char << 32 | count) sorted by char, built on first use
+    private volatile long[] charCounts;
+    // token ids sorted, and distinct word shingle hashes sorted, built on first use
+    private volatile int[] sortedTokens;
+    private volatile long[] shingles;
+
+    public TextArtifact(String normalized, int[] tokens, long[] fingerprints, String contentHash) {
+        this.normalized = normalized;
+        this.tokens = tokens;
+        this.fingerprints = fingerprints;
+        this.contentHash = contentHash;
+    }
+
+    public static TextArtifact build(String content, int kgram, int window) {
+        String normalized = normalize(content);
+        return new TextArtifact(normalized, tokenize(normalized),
+                Winnowing.fingerprints(normalized, kgram, window), sha256(content));
+    }
+
+    public static String normalize(String text) {
+        return text.toLowerCase().replaceAll("\\s+", " ").trim();
+    }
+
+    // token id = mixed hash of the word (runs of letters/digits), collisions are negligible for scoring
+    static int[] tokenize(String normalized) {
+        int[] out = new int[16];
+        int count = 0;
+        int h = 0;
+        boolean inWord = false;
+        for (int i = 0; i <= normalized.length(); i++) {
+            char c = i < normalized.length() ? normalized.charAt(i) : ' ';
+            if (Character.isLetterOrDigit(c)) {
+                h = inWord ? 31 * h + c : c;
+                inWord = true;
+            } else if (inWord) {
+                if (count == out.length) {
+                    out = Arrays.copyOf(out, count * 2);
+                }
+                out[count++] = mix(h);
+                inWord = false;
+            }
+        }
+        return Arrays.copyOf(out, count);
+    }
+
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        return h ^ (h >>> 16);
+    }
+
+    public static String sha256(String content) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(content.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Upper bound of LCS(a, b) over the normalized texts: every common subsequence uses each
+     * character at most as often as the rarer side has it. Never underestimates, costs
+     * O(distinct characters) once both histograms exist.
+     */
+    public static int lcsUpperBound(TextArtifact a, TextArtifact b) {
+        long[] x = a.charCounts();
+        long[] y = b.charCounts();
+        int bound = 0;
+        int i = 0, j = 0;
+        while (i < x.length && j < y.length) {
+            long cx = x[i] >>> 32, cy = y[j] >>> 32;
+            if (cx < cy) {
+                i++;
+            } else if (cx > cy) {
+                j++;
+            } else {
+                bound += (int) Math.min(x[i++] & 0xFFFFFFFFL, y[j++] & 0xFFFFFFFFL);
+            }
+        }
+        return bound;
+    }
+
+    private long[] charCounts() {
+        long[] counts = charCounts;
+        if (counts == null) {
+            int[] byChar = new int[Character.MAX_VALUE + 1];
+            int distinct = 0;
+            for (int i = 0; i < normalized.length(); i++) {
+                if (byChar[normalized.charAt(i)]++ == 0) {
+                    distinct++;
+                }
+            }
+            counts = new long[distinct];
+            for (int c = 0, k = 0; k < distinct; c++) {
+                if (byChar[c] != 0) {
+                    counts[k++] = ((long) c << 32) | byChar[c];
+                }
+            }
+            charCounts = counts;
+        }
+        return counts;
+    }
+
+    /**
+     * Upper bound of the token LCS: every common subsequence uses each token at most as often
+     * as the rarer side has it. Merge of the sorted token arrays, O(tokens).
+     */
+    public static int tokenLcsUpperBound(TextArtifact a, TextArtifact b) {
+        int[] x = a.sortedTokens();
+        int[] y = b.sortedTokens();
+        int bound = 0;
+        int i = 0, j = 0;
+        while (i < x.length && j < y.length) {
+            if (x[i] < y[j]) {
+                i++;
+            } else if (x[i] > y[j]) {
+                j++;
+            } else {
+                bound++;
+                i++;
+                j++;
+            }
+        }
+        return bound;
+    }
+
+    private int[] sortedTokens() {
+        int[] sorted = sortedTokens;
+        if (sorted == null) {
+            sorted = tokens.clone();
+            Arrays.sort(sorted);
+            sortedTokens = sorted;
+        }
+        return sorted;
+    }
+
+    // distinct hashes of every SHINGLE_SIZE consecutive tokens, sorted; a shorter text is a single shingle
+    public long[] shingles() {
+        long[] result = shingles;
+        if (result == null) {
+            int count = tokens.length == 0 ? 0 : Math.max(1, tokens.length - SHINGLE_SIZE + 1);
+            result = new long[count];
+            for (int i = 0; i < count; i++) {
+                long h = 0;
+                for (int k = i; k < Math.min(tokens.length, i + SHINGLE_SIZE); k++) {
+                    h = h * 0x9E3779B97F4A7C15L + tokens[k];
+                }
+                result[i] = h;
+            }
+            Arrays.sort(result);
+            int distinct = 0;
+            for (int i = 0; i < result.length; i++) {
+                if (i == 0 || result[i] != result[i - 1]) {
+                    result[distinct++] = result[i];
+                }
+            }
+            result = Arrays.copyOf(result, distinct);
+            shingles = result;
+        }
+        return result;
+    }
+
+    public String getNormalized() { return normalized; }
+    public int[] getTokens() { return tokens; }
+    public long[] getFingerprints() { return fingerprints; }
+    public String getContentHash() { return contentHash; }
+
+    // rough heap footprint, used as cache weight
+    public long weight() {
+        return 64L + normalized.length() * 2L + tokens.length * 4L + fingerprints.length * 8L;
+    }
+}
@@ -0,0 +1,45 @@
+package com.antiplagiarism.analysis.engine;
+
+/**
+ * similarity = (2 * LCS) / (len1 + len2) * 100 over word token ids. A word sequence is several
+ * times shorter than its characters, and a common subsequence has to consist of whole words,
+ * so unrelated texts in the same language no longer share most of their letters.
+ */
+public final class TokenLcsEngine implements SimilarityEngine {
+
+    public static final String NAME = "token-lcs";
+
+    @Override
+    public String name() { return NAME; }
+
+    @Override
+    public String id() { return "token-lcs/1"; }
+
+    // LCS <= min(lengths) and the token multiset bound
+    @Override
+    public double upperBound(TextArtifact a, TextArtifact b) {
+        int n1 = a.getTokens().length;
+        int n2 = b.getTokens().length;
+        if (n1 == 0 || n2 == 0) {
+            return 0.0;
+        }
+        int lcsBound = Math.min(Math.min(n1, n2), TextArtifact.tokenLcsUpperBound(a, b));
+        return SimilarityEngine.round((2.0 * lcsBound) / (n1 + n2) * 100);
+    }
+
+    @Override
+    public double similarity(TextArtifact a, TextArtifact b, long timeoutNanos) {
+        int[] t1 = a.getTokens();
+        int[] t2 = b.getTokens();
+        if (t1.length == 0 || t2.length == 0) {
+            return 0.0;
+        }
+        int lcs = BitParallelLcs.length(t1, t2, timeoutNanos);
+        return SimilarityEngine.round((2.0 * lcs) / (t1.length + t2.length) * 100);
+    }
+
+    @Override
+    public long cost(TextArtifact a, TextArtifact b) {
+        return (long) a.getTokens().length * b.getTokens().length;
+    }
+}
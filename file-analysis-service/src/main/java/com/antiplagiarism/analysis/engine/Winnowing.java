@@ -0,0 +1,124 @@
+package com.antiplagiarism.analysis.engine;
+
+import java.util.Arrays;
+
+/**
+ * Document fingerprints by k-gram hashing + winnowing (Schleimer, Wilkerson, Aiken).
+ * From every window of {@code window} consecutive k-gram hashes the minimum is kept,
+ * so any common substring of at least {@code k + window - 1} chars is guaranteed
+ * to produce at least one shared fingerprint.
+ */
+public final class Winnowing {
+
+    private static final long BASE = 0x100000001B3L;
+
+    private Winnowing() {
+    }
+
+    // distinct fingerprints of the text, sorted ascending
+    public static long[] fingerprints(CharSequence text, int k, int window) {
+        long[] hashes = kgramHashes(text, k);
+        if (hashes.length == 0) {
+            return hashes;
+        }
+        if (hashes.length <= window) {
+            return new long[]{min(hashes, 0, hashes.length)};
+        }
+
+        int[] positions = select(hashes, window);
+        long[] selected = new long[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            selected[i] = hashes[positions[i]];
+        }
+
+        Arrays.sort(selected);
+        return distinct(selected);
+    }
+
+    // k-gram positions picked by winnowing, ascending; hashes[position] is the fingerprint
+    static int[] select(long[] hashes, int window) {
+        if (hashes.length <= window) {
+            int minPos = 0;
+            for (int i = 1; i < hashes.length; i++) {
+                if (hashes[i] <= hashes[minPos]) {
+                    minPos = i;
+                }
+            }
+            return hashes.length == 0 ? new int[0] : new int[]{minPos};
+        }
+        int[] selected = new int[hashes.length - window + 1];
+        int count = 0;
+        int minPos = -1;
+        for (int start = 0; start + window <= hashes.length; start++) {
+            int end = start + window;
+            if (minPos < start) {
+                // previous minimum fell out of the window, rescan (rightmost minimum wins)
+                minPos = start;
+                for (int i = start + 1; i < end; i++) {
+                    if (hashes[i] <= hashes[minPos]) {
+                        minPos = i;
+                    }
+                }
+                selected[count++] = minPos;
+            } else if (hashes[end - 1] <= hashes[minPos]) {
+                minPos = end - 1;
+                selected[count++] = minPos;
+            }
+        }
+        return Arrays.copyOf(selected, count);
+    }
+
+    // rolling polynomial hash of every k-gram, mixed so that the minimum is not biased by the low bits
+    static long[] kgramHashes(CharSequence text, int k) {
+        int n = text.length();
+        if (n < k) {
+            return n == 0 ? new long[0] : new long[]{mix(hash(text, 0, n))};
+        }
+        long pow = 1;
+        for (int i = 1; i < k; i++) {
+            pow *= BASE;
+        }
+
+        long[] out = new long[n - k + 1];
+        long h = hash(text, 0, k);
+        out[0] = mix(h);
+        for (int i = k; i < n; i++) {
+            h = (h - text.charAt(i - k) * pow) * BASE + text.charAt(i);
+            out[i - k + 1] = mix(h);
+        }
+        return out;
+    }
+
+    private static long hash(CharSequence text, int from, int to) {
+        long h = 0;
+        for (int i = from; i < to; i++) {
+            h = h * BASE + text.charAt(i);
+        }
+        return h;
+    }
+
+    // splitmix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    private static long min(long[] values, int from, int to) {
+        long m = values[from];
+        for (int i = from + 1; i < to; i++) {
+            m = Math.min(m, values[i]);
+        }
+        return m;
+    }
+
+    private static long[] distinct(long[] sorted) {
+        int n = 0;
+        for (int i = 0; i < sorted.length; i++) {
+            if (i == 0 || sorted[i] != sorted[i - 1]) {
+                sorted[n++] = sorted[i];
+            }
+        }
+        return Arrays.copyOf(sorted, n);
+    }
+}
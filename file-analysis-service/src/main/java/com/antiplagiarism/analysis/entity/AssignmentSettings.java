@@ -0,0 +1,36 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// per-assignment analysis options; an assignment without a row uses the service defaults
+@Entity
+@Table(name = "assignment_settings")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AssignmentSettings {
+
+    @Id
+    private String assignmentId;
+
+    // similarity engine name (char-lcs, token-lcs, shingle-jaccard)
+    @Column(nullable = false, length = 32)
+    private String engine;
+
+    // also search earlier works of other assignments (last year's submissions); null = service default
+    private Boolean corpusSearch;
+
+    @Column(nullable = false)
+    private LocalDateTime updatedAt;
+
+    @PrePersist
+    @PreUpdate
+    public void touch() {
+        updatedAt = LocalDateTime.now();
+    }
+}
@@ -0,0 +1,85 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+// all-pairs check of one assignment; processedWorks is the resume cursor into the works ordered by submission
+@Entity
+@Table(name = "cross_check_jobs")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CrossCheckJob {
+
+    public static final int ERROR_LENGTH = 255;
+
+    @Id
+    private String id;
+
+    @Column(nullable = false)
+    private String assignmentId;
+
+    @Column(nullable = false)
+    private String status; // PENDING, RUNNING, COMPLETED, FAILED
+
+    // similarity engine name, fixed when the job starts; null on jobs from before engines were selectable (char-lcs)
+    @Column(length = 32)
+    private String engine;
+
+    private Integer totalWorks;
+
+    private Integer processedWorks;
+
+    private Long comparedPairs;
+
+    private Long reusedPairs;
+
+    @Column(columnDefinition = "TEXT")
+    private String clusters; // JSON list of clusters, set on completion
+
+    // at most ERROR_LENGTH chars of the failure message
+    private String error;
+
+    private String leaseOwner;
+
+    // new on every claim; progress and the result are written only under the token of the current claim
+    private String leaseToken;
+
+    private Integer attempts; // how many times the job was claimed
+
+    private LocalDateTime leaseExpiresAt;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    private LocalDateTime startedAt;
+
+    private LocalDateTime completedAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (id == null) {
+            id = UUID.randomUUID().toString();
+        }
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+        if (status == null) {
+            status = "PENDING";
+        }
+        if (processedWorks == null) {
+            processedWorks = 0;
+        }
+        if (comparedPairs == null) {
+            comparedPairs = 0L;
+        }
+        if (reusedPairs == null) {
+            reusedPairs = 0L;
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+// one row per (work, winnowed k-gram hash); rows are written in bulk by FingerprintIndex
+@Entity
+@Table(name = "fingerprints", indexes = {
+        @Index(name = "idx_fingerprints_assignment_hash", columnList = "assignment_id, hash"),
+        @Index(name = "idx_fingerprints_hash", columnList = "hash, assignment_id, work_id")
+})
+@IdClass(Fingerprint.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class Fingerprint {
+
+    @Id
+    private String workId;
+
+    @Id
+    private Long hash;
+
+    @Column(nullable = false)
+    private String assignmentId;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String workId;
+        private Long hash;
+    }
+}
@@ -0,0 +1,52 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// memoized similarity of two works (workA < workB) under one scoring algorithm; written in bulk by PairScoreStore
+@Entity
+@Table(name = "pair_scores", indexes = {
+        @Index(name = "idx_pair_scores_work_b", columnList = "work_b, algorithm")
+})
+@IdClass(PairScore.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PairScore {
+
+    @Id
+    @Column(name = "work_a")
+    private String workA;
+
+    @Id
+    @Column(name = "work_b")
+    private String workB;
+
+    @Id
+    @Column(length = 32)
+    private String algorithm;
+
+    @Column(nullable = false)
+    private Double score;
+
+    // true when score is only an upper bound (the pair was rejected before the engine ran)
+    @Column(nullable = false)
+    private Boolean upperBound;
+
+    @Column(nullable = false)
+    private LocalDateTime computedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String workA;
+        private String workB;
+        private String algorithm;
+    }
+}
@@ -1,11 +1,14 @@
 package com.antiplagiarism.analysis.entity;
 
+import com.antiplagiarism.analysis.dto.MatchDetail;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 
 @Entity
@@ -28,16 +31,40 @@ public class Report {
 
     private Double originalityPercent;
 
-    private String verdict; // ORIGINAL, SUSPICIOUS, PLAGIARISM
+    private String verdict; // ORIGINAL, SUSPICIOUS, PLAGIARISM, UNRESOLVED
 
+    // some comparisons timed out, the report lists them as UNRESOLVED matches
+    private Boolean incomplete;
+
+    // SimilarityEngine.id() the report was computed with; null for reports from before it was recorded
+    private String engine;
+
+    // legacy JSON of the matches, set only on reports completed before report_matches existed;
+    // ReportMatchStore moves it there at startup
+    @JsonIgnore
     @Column(columnDefinition = "TEXT")
-    private String details; // JSON string with match details
+    private String details;
+
+    // rows of report_matches, filled when the report is read or written
+    @Transient
+    private List<MatchDetail> matches;
 
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
     private LocalDateTime completedAt;
 
+    // job queue bookkeeping: which worker holds the PENDING report and until when
+    private String leaseOwner;
+
+    private LocalDateTime leaseExpiresAt;
+
+    private Integer attempts;
+
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0")
+    private long version;
+
     @PrePersist
     public void prePersist() {
         if (id == null) {
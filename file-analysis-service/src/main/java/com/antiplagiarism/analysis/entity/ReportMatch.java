@@ -0,0 +1,74 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+// one match of a report: the analyzed work resembles an earlier one; written and queried by ReportMatchStore.
+// Student names and the assignment are copied from works (which never change) so listings need no join.
+@Entity
+@Table(name = "report_matches", indexes = {
+        @Index(name = "idx_report_matches_matched_work", columnList = "matched_work_id, similarity_percent"),
+        @Index(name = "idx_report_matches_assignment", columnList = "assignment_id, similarity_percent"),
+        @Index(name = "idx_report_matches_matched_student", columnList = "matched_student_name, similarity_percent"),
+        @Index(name = "idx_report_matches_similarity", columnList = "similarity_percent"),
+        @Index(name = "idx_report_matches_work", columnList = "work_id")
+})
+@IdClass(ReportMatch.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReportMatch {
+
+    @Id
+    @Column(name = "report_id")
+    private String reportId;
+
+    @Id
+    @Column(name = "matched_work_id")
+    private String matchedWorkId;
+
+    @Column(name = "work_id", nullable = false)
+    private String workId;
+
+    @Column(name = "assignment_id", nullable = false)
+    private String assignmentId;
+
+    private String studentName;
+
+    @Column(name = "matched_student_name")
+    private String matchedStudentName;
+
+    private LocalDateTime matchedSubmittedAt;
+
+    // equals assignment_id unless the match came from corpus search
+    @Column(name = "matched_assignment_id")
+    private String matchedAssignmentId;
+
+    @Column(name = "similarity_percent", nullable = false)
+    private Double similarityPercent;
+
+    @Column(nullable = false)
+    private String verdict;
+
+    // JSON [[offset, length, matchedOffset, matchedLength, rawOffset, rawLength, matchedRawOffset,
+    // matchedRawLength], ...], see MatchPassage; the raw four are left out when a file was unavailable
+    @Column(columnDefinition = "TEXT")
+    private String passages;
+
+    // true for the matches of the work's most recent report, older reports keep theirs as history
+    @Column(nullable = false)
+    private Boolean latest;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private String reportId;
+        private String matchedWorkId;
+    }
+}
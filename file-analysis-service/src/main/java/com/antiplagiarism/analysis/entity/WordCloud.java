@@ -0,0 +1,36 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// full word frequency table of a work, most frequent first; deflate-compressed "word count" lines (see WordCloudStore)
+@Entity
+@Table(name = "word_clouds")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WordCloud {
+
+    @Id
+    private String workId;
+
+    @Column(nullable = false)
+    private Integer uniqueWords;
+
+    @Column(nullable = false)
+    private byte[] frequencies;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
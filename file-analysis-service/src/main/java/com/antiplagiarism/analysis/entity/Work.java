@@ -9,7 +9,12 @@ import java.time.LocalDateTime;
 import java.util.UUID;
 
 @Entity
-@Table(name = "works")
+// earlier works of an assignment are read by (assignment_id, submitted_at) ranges,
+// identical uploads by (assignment_id, content_hash)
+@Table(name = "works", indexes = {
+        @Index(name = "idx_works_assignment_submitted", columnList = "assignment_id, submitted_at"),
+        @Index(name = "idx_works_assignment_content", columnList = "assignment_id, content_hash")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -27,6 +32,10 @@ public class Work {
     @Column(nullable = false)
     private String fileId;
 
+    // SHA-256 of the file as computed by File Storing Service, null for older works
+    @Column(length = 64)
+    private String contentHash;
+
     @Column(nullable = false)
     private LocalDateTime submittedAt;
 
@@ -0,0 +1,45 @@
+package com.antiplagiarism.analysis.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// precomputed analysis input of a work; text and tokens are deflate-compressed, fingerprints are raw longs (see ArtifactStore)
+@Entity
+@Table(name = "work_artifacts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class WorkArtifact {
+
+    @Id
+    private String workId;
+
+    @Column(nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(nullable = false)
+    private Integer normalizedLength;
+
+    @Column(nullable = false)
+    private byte[] normalizedText;
+
+    @Column(nullable = false)
+    private byte[] tokens;
+
+    @Column(nullable = false)
+    private byte[] fingerprints;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    @PrePersist
+    public void prePersist() {
+        if (createdAt == null) {
+            createdAt = LocalDateTime.now();
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package com.antiplagiarism.analysis.repository;
+
+import com.antiplagiarism.analysis.entity.CrossCheckJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface CrossCheckJobRepository extends JpaRepository<CrossCheckJob, String> {
+
+    Optional<CrossCheckJob> findFirstByAssignmentIdAndStatusIn(String assignmentId, Collection<String> statuses);
+
+    // new jobs and RUNNING ones whose owner stopped renewing the lease (crashed replica), except the
+    // ones this worker still runs (never empty, the caller adds a placeholder)
+    @Query(value = "SELECT * FROM cross_check_jobs WHERE status IN ('PENDING', 'RUNNING') " +
+            "AND (lease_expires_at IS NULL OR lease_expires_at < :now) AND id NOT IN (:running) " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<CrossCheckJob> lockClaimable(@Param("now") LocalDateTime now, @Param("running") Collection<String> running,
+                                      @Param("limit") int limit);
+
+    // progress and lease in one step; 0 rows means the lease was lost and the job must stop
+    @Modifying
+    @Query("UPDATE CrossCheckJob j SET j.totalWorks = :total, j.processedWorks = :processed, " +
+            "j.comparedPairs = :compared, j.reusedPairs = :reused, j.leaseExpiresAt = :expiresAt " +
+            "WHERE j.id = :id AND j.leaseToken = :token AND j.status = 'RUNNING'")
+    int saveProgress(@Param("id") String id, @Param("token") String token, @Param("total") int total,
+                     @Param("processed") int processed, @Param("compared") long compared,
+                     @Param("reused") long reused, @Param("expiresAt") LocalDateTime expiresAt);
+
+    // hands the job back to the queue as if this claim had not happened, it resumes from its cursor
+    @Modifying
+    @Query("UPDATE CrossCheckJob j SET j.leaseOwner = NULL, j.leaseToken = NULL, j.leaseExpiresAt = NULL, " +
+            "j.attempts = j.attempts - 1 WHERE j.id = :id AND j.leaseToken = :token AND j.status = 'RUNNING'")
+    int releaseLease(@Param("id") String id, @Param("token") String token);
+
+    // heartbeat of a running job, fenced like saveProgress
+    @Modifying
+    @Query("UPDATE CrossCheckJob j SET j.leaseExpiresAt = :expiresAt " +
+            "WHERE j.id = :id AND j.leaseToken = :token AND j.status = 'RUNNING'")
+    int extendLease(@Param("id") String id, @Param("token") String token,
+                    @Param("expiresAt") LocalDateTime expiresAt);
+}
@@ -2,11 +2,41 @@ package com.antiplagiarism.analysis.repository;
 
 import com.antiplagiarism.analysis.entity.Report;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ReportRepository extends JpaRepository<Report, String> {
     List<Report> findByWorkId(String workId);
+
+    long countByStatus(String status);
+
+    boolean existsByWorkIdAndStatus(String workId, String status);
+
+    List<Report> findByWorkIdInAndStatus(Collection<String> workIds, String status);
+
+    // PENDING reports nobody holds a live lease on; rows locked by other replicas are skipped
+    @Query(value = "SELECT * FROM reports WHERE status = 'PENDING' " +
+            "AND (lease_expires_at IS NULL OR lease_expires_at < :now) " +
+            "ORDER BY created_at LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Report> lockClaimable(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    // heartbeat, deliberately does not bump the version so the worker's copy stays valid
+    @Modifying
+    @Query("UPDATE Report r SET r.leaseExpiresAt = :expiresAt " +
+            "WHERE r.id IN :ids AND r.leaseOwner = :owner AND r.status = 'PENDING'")
+    int extendLeases(@Param("ids") Collection<String> ids, @Param("owner") String owner,
+                     @Param("expiresAt") LocalDateTime expiresAt);
+
+    // hands a claimed job back to the queue as if it had not been claimed
+    @Modifying
+    @Query("UPDATE Report r SET r.leaseOwner = NULL, r.leaseExpiresAt = NULL, r.attempts = r.attempts - 1 " +
+            "WHERE r.id = :id AND r.leaseOwner = :owner AND r.status = 'PENDING'")
+    int releaseLease(@Param("id") String id, @Param("owner") String owner);
 }
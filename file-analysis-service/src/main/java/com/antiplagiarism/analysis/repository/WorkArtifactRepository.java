@@ -0,0 +1,9 @@
+package com.antiplagiarism.analysis.repository;
+
+import com.antiplagiarism.analysis.entity.WorkArtifact;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface WorkArtifactRepository extends JpaRepository<WorkArtifact, String> {
+}
@@ -1,13 +1,54 @@
 package com.antiplagiarism.analysis.repository;
 
 import com.antiplagiarism.analysis.entity.Work;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface WorkRepository extends JpaRepository<Work, String> {
     List<Work> findByAssignmentId(String assignmentId);
     List<Work> findByAssignmentIdOrderBySubmittedAtAsc(String assignmentId);
+
+    boolean existsByAssignmentId(String assignmentId);
+
+    long countByAssignmentIdAndSubmittedAtBefore(String assignmentId, LocalDateTime before);
+
+    // one keyset page of the works submitted before `before`, in submission order, starting after
+    // (afterTime, afterId); served by idx_works_assignment_submitted
+    @Query("SELECT w.id AS id, w.fileId AS fileId, w.studentName AS studentName, w.assignmentId AS assignmentId, " +
+           "w.contentHash AS contentHash, w.submittedAt AS submittedAt FROM Work w " +
+           "WHERE w.assignmentId = :assignmentId AND w.submittedAt < :before " +
+           "AND (w.submittedAt > :afterTime OR (w.submittedAt = :afterTime AND w.id > :afterId)) " +
+           "ORDER BY w.submittedAt, w.id")
+    List<WorkSummary> findEarlierPage(@Param("assignmentId") String assignmentId,
+                                      @Param("before") LocalDateTime before,
+                                      @Param("afterTime") LocalDateTime afterTime,
+                                      @Param("afterId") String afterId,
+                                      Limit limit);
+
+    List<WorkSummary> findByIdInOrderBySubmittedAtAscIdAsc(Collection<String> ids);
+
+    @Query("SELECT w.id FROM Work w WHERE w.assignmentId = :assignmentId ORDER BY w.submittedAt, w.id")
+    List<String> findIdsByAssignment(@Param("assignmentId") String assignmentId);
+
+    // the whole assignment in submission order, as projections
+    @Query("SELECT w.id AS id, w.fileId AS fileId, w.studentName AS studentName, w.assignmentId AS assignmentId, " +
+           "w.contentHash AS contentHash, w.submittedAt AS submittedAt FROM Work w " +
+           "WHERE w.assignmentId = :assignmentId ORDER BY w.submittedAt, w.id")
+    List<WorkSummary> findSummariesByAssignment(@Param("assignmentId") String assignmentId);
+
+    // earlier uploads of the same file; served by idx_works_assignment_content
+    @Query("SELECT w.id AS id, w.fileId AS fileId, w.studentName AS studentName, w.assignmentId AS assignmentId, " +
+           "w.contentHash AS contentHash, w.submittedAt AS submittedAt FROM Work w " +
+           "WHERE w.assignmentId = :assignmentId AND w.contentHash = :contentHash AND w.submittedAt < :before")
+    List<WorkSummary> findEarlierWithContent(@Param("assignmentId") String assignmentId,
+                                             @Param("contentHash") String contentHash,
+                                             @Param("before") LocalDateTime before);
 }
@@ -0,0 +1,13 @@
+package com.antiplagiarism.analysis.repository;
+
+import java.time.LocalDateTime;
+
+// what comparisons need of a work; read as a projection, the entity is not loaded
+public interface WorkSummary {
+    String getId();
+    String getFileId();
+    String getStudentName();
+    String getAssignmentId();
+    String getContentHash();
+    LocalDateTime getSubmittedAt();
+}
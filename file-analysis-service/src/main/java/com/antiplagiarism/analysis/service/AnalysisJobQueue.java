@@ -0,0 +1,209 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.entity.Report;
+import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.repository.ReportRepository;
+import com.antiplagiarism.analysis.repository.WorkRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Durable job queue on top of the reports table. A PENDING report is a job; workers claim
+ * it with SELECT ... FOR UPDATE SKIP LOCKED, only as many as its idle workers (plus a small
+ * prefetch) can start, and hold a lease that the heartbeat keeps extending while the job runs.
+ * If a replica dies its leases run out and the jobs are claimed again by
+ * whoever polls next. The report's @Version fences a worker that lost its lease.
+ */
+@Service
+public class AnalysisJobQueue {
+
+    private final ReportRepository reportRepo;
+    private final WorkRepository workRepo;
+    private final AnalysisService analysisService;
+    private final ThreadPoolExecutor analysisExecutor;
+    private final Downstream fileStoring;
+    private final TransactionTemplate tx;
+    private final TaskScheduler scheduler;
+    private final String workerId;
+    // claimed and not finished; running is the part of it a worker has started
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Set<String> running = ConcurrentHashMap.newKeySet();
+    private final Timer queueWait;
+    // polls run one at a time; a lock, not synchronized: polls run on virtual threads and one
+    // waiting for a monitor would pin its carrier thread
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    @Value("${analysis.queue.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${analysis.queue.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${analysis.queue.prefetch:1}")
+    private int prefetch;
+
+    public AnalysisJobQueue(ReportRepository reportRepo, WorkRepository workRepo,
+                            AnalysisService analysisService, ThreadPoolExecutor analysisExecutor,
+                            @Qualifier("fileStoring") Downstream fileStoring,
+                            TransactionTemplate tx, TaskScheduler scheduler,
+                            @Value("${analysis.queue.worker-id:}") String workerId,
+                            MeterRegistry meterRegistry) {
+        this.reportRepo = reportRepo;
+        this.workRepo = workRepo;
+        this.analysisService = analysisService;
+        this.analysisExecutor = analysisExecutor;
+        this.fileStoring = fileStoring;
+        this.tx = tx;
+        this.scheduler = scheduler;
+        this.workerId = workerId.isBlank() ? defaultWorkerId() : workerId;
+        this.queueWait = Timer.builder("analysis.queue.wait")
+                .description("Time a report waited in PENDING before its first claim")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        Gauge.builder("analysis.queue.in.flight", inFlight, Set::size)
+                .description("Jobs claimed by this worker and not finished yet")
+                .register(meterRegistry);
+    }
+
+    // called after a submission so it does not wait for the next poll
+    public void wakeUp() {
+        scheduler.schedule(this::poll, Instant.now());
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.queue.poll-interval-ms:2000}")
+    public void poll() {
+        pollLock.lock();
+        try {
+            claimAndDispatch();
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private void claimAndDispatch() {
+        // claimed jobs beyond what the workers can start would hold leases other replicas could use
+        int free = Math.min(analysisExecutor.getMaximumPoolSize() + prefetch - inFlight.size(),
+                analysisExecutor.getQueue().remainingCapacity());
+        // every job starts by fetching files; while File Storing Service's circuit is open jobs stay PENDING
+        if (free <= 0 || !fileStoring.isAvailable()) {
+            return;
+        }
+        for (Report report : claim(free)) {
+            if (report.getAttempts() > maxAttempts) {
+                // claimed and lost too many times, most likely it kills the worker
+                analysisService.markFailed(report);
+                continue;
+            }
+            inFlight.add(report.getId());
+            try {
+                analysisExecutor.execute(() -> process(report));
+            } catch (RejectedExecutionException e) {
+                // the lease simply runs out and the job is claimed again later
+                inFlight.remove(report.getId());
+            }
+        }
+    }
+
+    private List<Report> claim(int limit) {
+        List<Report> claimed = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<Report> reports = reportRepo.lockClaimable(now, limit);
+            for (Report report : reports) {
+                report.setLeaseOwner(workerId);
+                report.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+                report.setAttempts(report.getAttempts() == null ? 1 : report.getAttempts() + 1);
+                if (report.getAttempts() == 1 && report.getCreatedAt() != null) {
+                    queueWait.record(Duration.between(report.getCreatedAt(), now));
+                }
+            }
+            return reportRepo.saveAll(reports);
+        });
+        return claimed == null ? List.of() : claimed;
+    }
+
+    private void process(Report report) {
+        running.add(report.getId());
+        try {
+            Work work = workRepo.findById(report.getWorkId()).orElse(null);
+            if (work == null) {
+                analysisService.markFailed(report);
+                return;
+            }
+            analysisService.analyze(work, report);
+        } catch (OptimisticLockingFailureException e) {
+            // lease expired and another worker took the job over, its result wins
+        } catch (Downstream.RefusedException e) {
+            // File Storing Service refused the call (circuit open or bulkhead full): the job goes back
+            // to the queue without using up an attempt
+            tx.executeWithoutResult(status -> reportRepo.releaseLease(report.getId(), workerId));
+        } finally {
+            running.remove(report.getId());
+            inFlight.remove(report.getId());
+            // a worker is free, refill it without waiting for the next poll
+            wakeUp();
+        }
+    }
+
+    // only started jobs are kept; a prefetched one waits briefly, and if its lease runs out anyway
+    // another replica takes the job and the version check fences this one
+    @Scheduled(fixedDelayString = "${analysis.queue.heartbeat-ms:10000}")
+    public void heartbeat() {
+        if (running.isEmpty()) {
+            return;
+        }
+        List<String> ids = new ArrayList<>(running);
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(leaseSeconds);
+        tx.executeWithoutResult(status -> reportRepo.extendLeases(ids, workerId, expiresAt));
+    }
+
+    public String getWorkerId() {
+        return workerId;
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("workerId", workerId);
+        stats.put("pending", reportRepo.countByStatus("PENDING"));
+        stats.put("inFlight", inFlight.size());
+        stats.put("running", running.size());
+        stats.put("queued", analysisExecutor.getQueue().size());
+        stats.put("queueCapacity", analysisExecutor.getQueue().size() + analysisExecutor.getQueue().remainingCapacity());
+        stats.put("activeWorkers", analysisExecutor.getActiveCount());
+        stats.put("workers", analysisExecutor.getMaximumPoolSize());
+        stats.put("completed", analysisExecutor.getCompletedTaskCount());
+        return stats;
+    }
+
+    private static String defaultWorkerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "analysis";
+        }
+        return host + "-" + UUID.randomUUID().toString().substring(0, 8);
+    }
+}
@@ -1,132 +1,524 @@
 package com.antiplagiarism.analysis.service;
 
+import com.antiplagiarism.analysis.dto.MatchDetail;
+import com.antiplagiarism.analysis.dto.MatchPassage;
 import com.antiplagiarism.analysis.dto.PlagiarismResult;
+import com.antiplagiarism.analysis.engine.PassageMatcher;
+import com.antiplagiarism.analysis.engine.RawOffsets;
+import com.antiplagiarism.analysis.engine.SimilarityEngine;
+import com.antiplagiarism.analysis.engine.TextArtifact;
 import com.antiplagiarism.analysis.entity.Report;
 import com.antiplagiarism.analysis.entity.Work;
 import com.antiplagiarism.analysis.repository.ReportRepository;
 import com.antiplagiarism.analysis.repository.WorkRepository;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.antiplagiarism.analysis.repository.WorkSummary;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.HttpMethod;
-import org.springframework.http.ResponseEntity;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class AnalysisService {
 
+    // keyset start, before any submission
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
     private final WorkRepository workRepo;
     private final ReportRepository reportRepo;
     private final PlagiarismDetectionService plagiarismService;
-    private final RestTemplate restTemplate;
-    private final ObjectMapper objectMapper;
+    private final FingerprintIndex fingerprintIndex;
+    private final ArtifactStore artifactStore;
+    private final FileStoringClient fileClient;
+    private final WordCloudStore wordCloudStore;
+    private final PairScoreStore pairScores;
+    private final ReportMatchStore matchStore;
+    private final AssignmentSettingsService settings;
+    private final TransactionTemplate tx;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary comparisonsPerSubmission;
+
+    // up to this many earlier works everything is compared, above it only index candidates
+    @Value("${analysis.index.full-scan-limit:100}")
+    private int fullScanLimit;
+
+    // earlier works are read and compared this many at a time
+    @Value("${analysis.compare.chunk-size:200}")
+    private int chunkSize;
+
+    // copied passages of reported matches: seeds are index fingerprints, shorter passages are dropped
+    @Value("${analysis.index.kgram:12}")
+    private int kgram;
+
+    @Value("${analysis.index.window:16}")
+    private int window;
+
+    @Value("${analysis.passages.min-length:30}")
+    private int passageMinLength;
 
-    @Value("${file.storing.service.url}")
-    private String fileStoringUrl;
+    @Value("${analysis.passages.max-gap:20}")
+    private int passageMaxGap;
+
+    @Value("${analysis.passages.max-count:50}")
+    private int maxPassages;
 
     public AnalysisService(WorkRepository workRepo, ReportRepository reportRepo,
-                          PlagiarismDetectionService plagiarismService,
-                          RestTemplate restTemplate, ObjectMapper objectMapper) {
+                          PlagiarismDetectionService plagiarismService, FingerprintIndex fingerprintIndex,
+                          ArtifactStore artifactStore, FileStoringClient fileClient, WordCloudStore wordCloudStore,
+                          PairScoreStore pairScores, ReportMatchStore matchStore,
+                          AssignmentSettingsService settings, TransactionTemplate tx, MeterRegistry meterRegistry) {
         this.workRepo = workRepo;
         this.reportRepo = reportRepo;
         this.plagiarismService = plagiarismService;
-        this.restTemplate = restTemplate;
-        this.objectMapper = objectMapper;
+        this.fingerprintIndex = fingerprintIndex;
+        this.artifactStore = artifactStore;
+        this.fileClient = fileClient;
+        this.wordCloudStore = wordCloudStore;
+        this.pairScores = pairScores;
+        this.matchStore = matchStore;
+        this.settings = settings;
+        this.tx = tx;
+        this.meterRegistry = meterRegistry;
+        this.comparisonsPerSubmission = DistributionSummary.builder("analysis.comparisons")
+                .description("Pairs compared for one report, stored scores excluded")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
     }
 
-    public Work createWorkAndAnalyze(String fileId, String studentName, String assignmentId) {
+    // persists the work with a PENDING report; the report row is the job picked up by AnalysisJobQueue
+    public Work submitWork(String fileId, String studentName, String assignmentId, String contentHash) {
         Work work = new Work();
         work.setFileId(fileId);
+        work.setContentHash(contentHash);
         work.setStudentName(studentName);
         work.setAssignmentId(assignmentId);
         work = workRepo.save(work);
+        queueReport(work.getId());
+        return work;
+    }
+
+    // a new PENDING report for the work; earlier reports stay as history
+    public Report reanalyze(String workId) {
+        Work work = workRepo.findById(workId)
+                .orElseThrow(() -> new RuntimeException("Work not found"));
+        return queueReport(work.getId());
+    }
+
+    // queues every work of the assignment that has no pending job; stored pair scores make the re-run cheap
+    public int reanalyzeAssignment(String assignmentId) {
+        int queued = 0;
+        for (String workId : workRepo.findIdsByAssignment(assignmentId)) {
+            if (!reportRepo.existsByWorkIdAndStatus(workId, "PENDING")) {
+                queueReport(workId);
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Re-applies the current thresholds to the latest completed report of every work in the
+     * assignment from the pair scores stored by its engine alone, without loading any text.
+     * Matches keep the passages of the previous report; one that enters a report only now has
+     * none until the work is re-analyzed. A work is queued for re-analysis instead when one of
+     * its stored bounds no longer rules a pair out, or when its latest report was not computed
+     * with the assignment's current engine. A work without stored pairs is not re-analyzed for
+     * that alone: above the full-scan limit an original work has no candidates and stores none.
+     */
+    public Map<String, Integer> rescoreAssignment(String assignmentId) {
+        SimilarityEngine engine = settings.getEngine(assignmentId);
+        List<WorkSummary> works = workRepo.findSummariesByAssignment(assignmentId);
+        Map<String, WorkSummary> byId = new HashMap<>();
+        works.forEach(w -> byId.put(w.getId(), w));
 
+        Map<String, Report> latest = new HashMap<>();
+        for (Report r : reportRepo.findByWorkIdInAndStatus(byId.keySet(), "COMPLETED")) {
+            latest.merge(r.getWorkId(), r, (x, y) -> x.getCompletedAt().isAfter(y.getCompletedAt()) ? x : y);
+        }
+
+        // later work of a pair -> reportable scores against earlier works
+        Map<String, Map<String, PlagiarismDetectionService.Score>> matches = new HashMap<>();
+        Set<String> covered = new HashSet<>();
+        Set<String> stale = new HashSet<>();
+        pairScores.forEachInAssignment(engine.id(), assignmentId, (pair, score) -> {
+            WorkSummary a = byId.get(pair[0]);
+            WorkSummary b = byId.get(pair[1]);
+            // a work submitted after the listing above is left for its own analysis
+            if (a == null || b == null) {
+                return;
+            }
+            WorkSummary later = a.getSubmittedAt().isBefore(b.getSubmittedAt()) ? b : a;
+            WorkSummary earlier = later == a ? b : a;
+            covered.add(later.getId());
+            if (!plagiarismService.isFresh(score)) {
+                stale.add(later.getId());
+            } else if (plagiarismService.isReportable(score)) {
+                matches.computeIfAbsent(later.getId(), k -> new HashMap<>()).put(earlier.getId(), score);
+            }
+        });
+
+        // corpus matches: pairs with earlier works of other assignments, only while the assignment opts in
+        Map<String, List<WorkSummary>> outside = new HashMap<>();
+        if (settings.isCorpusSearch(assignmentId)) {
+            Map<String, Map<String, PlagiarismDetectionService.Score>> pairs = new HashMap<>();
+            pairScores.forEachOutsideAssignment(engine.id(), assignmentId, (pair, score) ->
+                    pairs.computeIfAbsent(pair[0], k -> new HashMap<>()).put(pair[1], score));
+            Map<String, WorkSummary> others = new HashMap<>();
+            workRepo.findByIdInOrderBySubmittedAtAscIdAsc(
+                            pairs.values().stream().flatMap(m -> m.keySet().stream()).distinct().toList())
+                    .forEach(w -> others.put(w.getId(), w));
+            pairs.forEach((workId, scores) -> scores.forEach((otherId, score) -> {
+                WorkSummary work = byId.get(workId);
+                WorkSummary other = others.get(otherId);
+                if (work == null || other == null || !other.getSubmittedAt().isBefore(work.getSubmittedAt())) {
+                    return;
+                }
+                if (!plagiarismService.isFresh(score)) {
+                    stale.add(workId);
+                } else if (plagiarismService.isReportable(score)) {
+                    matches.computeIfAbsent(workId, k -> new HashMap<>()).put(otherId, score);
+                    outside.computeIfAbsent(workId, k -> new ArrayList<>()).add(other);
+                }
+            }));
+        }
+
+        // passages do not depend on thresholds, matches that stay in a report keep theirs
+        Map<String, List<MatchDetail>> previous = matchStore.findByReports(
+                latest.values().stream().map(Report::getId).toList());
+
+        List<Report> rescored = new ArrayList<>();
+        int queued = 0;
+        for (int i = 0; i < works.size(); i++) {
+            WorkSummary work = works.get(i);
+            Report report = latest.get(work.getId());
+            // a report from before the engine was recorded counts as this engine's if it stored any pair
+            boolean current = report != null && (report.getEngine() != null
+                    ? report.getEngine().equals(engine.id())
+                    : i == 0 || covered.contains(work.getId()));
+            if (stale.contains(work.getId()) || !current) {
+                if (!reportRepo.existsByWorkIdAndStatus(work.getId(), "PENDING")) {
+                    queueReport(work.getId());
+                    queued++;
+                }
+                continue;
+            }
+            Map<String, PlagiarismDetectionService.Score> scores = matches.getOrDefault(work.getId(), Map.of());
+            List<PlagiarismDetectionService.WorkContentPair> earlier = Stream.concat(
+                            works.subList(0, i).stream().filter(w -> scores.containsKey(w.getId())),
+                            outside.getOrDefault(work.getId(), List.of()).stream())
+                    .sorted(Comparator.comparing(WorkSummary::getSubmittedAt).thenComparing(WorkSummary::getId))
+                    .map(w -> toPair(w, null))
+                    .toList();
+            Map<String, List<MatchPassage>> passages = new HashMap<>();
+            previous.getOrDefault(report.getId(), List.of())
+                    .forEach(m -> passages.put(m.getMatchedWorkId(), m.getPassages()));
+            applyResult(report, plagiarismService.buildResult(earlier, scores));
+            report.getMatches().forEach(m -> m.setPassages(passages.get(m.getMatchedWorkId())));
+            rescored.add(report);
+        }
+        tx.executeWithoutResult(status -> {
+            reportRepo.saveAll(rescored);
+            rescored.forEach(r -> matchStore.replace(r, byId.get(r.getWorkId()), r.getMatches()));
+        });
+
+        Map<String, Integer> result = new LinkedHashMap<>();
+        result.put("rescored", rescored.size());
+        result.put("queued", queued);
+        return result;
+    }
+
+    private Report queueReport(String workId) {
         Report report = new Report();
-        report.setWorkId(work.getId());
+        report.setWorkId(workId);
         report.setStatus("PENDING");
-        report = reportRepo.save(report);
+        return reportRepo.save(report);
+    }
 
+    // runs a claimed job; any failure ends the report as FAILED, except File Storing Service
+    // refusing a call, which is passed on for the queue to retry the job
+    public void analyze(Work work, Report report) {
         try {
             runAnalysis(work, report);
+        } catch (OptimisticLockingFailureException | Downstream.RefusedException e) {
+            throw e;
         } catch (Exception e) {
-            report.setStatus("FAILED");
-            report.setCompletedAt(LocalDateTime.now());
-            reportRepo.save(report);
+            markFailed(report);
         }
+    }
 
-        return work;
+    public void markFailed(Report report) {
+        report.setStatus("FAILED");
+        report.setCompletedAt(LocalDateTime.now());
+        reportRepo.save(report);
+        recordLatency(report);
+    }
+
+    // submission (report creation) to completion, queue wait included
+    private void recordLatency(Report report) {
+        if (report.getCreatedAt() == null) {
+            return;
+        }
+        Timer.builder("analysis.report.latency")
+                .description("Time from report creation to completion")
+                .tag("status", report.getStatus())
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(Duration.between(report.getCreatedAt(), report.getCompletedAt()));
     }
 
+    private Timer stage(String name) {
+        return Timer.builder("analysis.stage")
+                .description("Time spent in one stage of a report")
+                .tag("stage", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    // failures are handled by analyze, which is the only place a report is marked FAILED
     private void runAnalysis(Work currentWork, Report report) {
-        try {
-            String currentContent = getFileContent(currentWork.getFileId());
-
-            List<Work> otherWorks = workRepo.findByAssignmentIdOrderBySubmittedAtAsc(currentWork.getAssignmentId());
-            otherWorks.removeIf(w -> w.getId().equals(currentWork.getId()));
-
-            List<PlagiarismDetectionService.WorkContentPair> previousWorks = new ArrayList<>();
-            for (Work other : otherWorks) {
-                if (other.getSubmittedAt().isBefore(currentWork.getSubmittedAt())) {
-                    try {
-                        String content = getFileContent(other.getFileId());
-                        previousWorks.add(new PlagiarismDetectionService.WorkContentPair(
-                                other.getId(), other.getStudentName(),
-                                other.getSubmittedAt().toString(), content
-                        ));
-                    } catch (Exception ignored) {}
-                }
-            }
+        SimilarityEngine engine = settings.getEngine(currentWork.getAssignmentId());
+        TextArtifact current = stage("artifact").record(() -> artifactStore.get(currentWork));
+        stage("index").record(() -> fingerprintIndex.index(currentWork, current.getFingerprints()));
+        stage("word-cloud").record(() -> wordCloudStore.warm(currentWork, current));
 
-            PlagiarismResult result = plagiarismService.analyzePlagiarism(currentContent, previousWorks);
+        // earlier works are compared a chunk at a time; across chunks only the works that make it
+        // into the report are kept, so memory does not grow with the assignment
+        List<PlagiarismDetectionService.WorkContentPair> matched = new ArrayList<>();
+        Map<String, PlagiarismDetectionService.Score> scores = new HashMap<>();
+        int compared = 0;
 
-            report.setStatus("COMPLETED");
-            report.setPlagiarismDetected(result.getPlagiarismDetected());
-            report.setOriginalityPercent(result.getOriginalityPercent());
-            report.setVerdict(result.getVerdict());
-            report.setDetails(objectMapper.writeValueAsString(result.getMatches()));
-            report.setCompletedAt(LocalDateTime.now());
-            reportRepo.save(report);
+        long earlier = workRepo.countByAssignmentIdAndSubmittedAtBefore(
+                currentWork.getAssignmentId(), currentWork.getSubmittedAt());
+        if (earlier > fullScanLimit) {
+            List<WorkSummary> candidates = stage("candidates").record(() -> findCandidates(currentWork, current));
+            for (int from = 0; from < candidates.size(); from += chunkSize) {
+                List<WorkSummary> chunk = candidates.subList(from, Math.min(candidates.size(), from + chunkSize));
+                compared += compareChunk(engine, currentWork, current, chunk, matched, scores);
+            }
+        } else {
+            List<WorkSummary> page = earlierPage(currentWork, null);
+            while (!page.isEmpty()) {
+                compared += compareChunk(engine, currentWork, current, page, matched, scores);
+                page = page.size() < chunkSize ? List.of() : earlierPage(currentWork, page.get(page.size() - 1));
+            }
+        }
+        if (settings.isCorpusSearch(currentWork.getAssignmentId())) {
+            List<WorkSummary> corpus = stage("corpus").record(() -> findCorpusCandidates(currentWork, current));
+            compared += compareChunk(engine, currentWork, current, corpus, matched, scores);
+        }
+        comparisonsPerSubmission.record(compared);
 
-        } catch (Exception e) {
-            report.setStatus("FAILED");
-            report.setCompletedAt(LocalDateTime.now());
+        report.setEngine(engine.id());
+        stage("result").record(() -> applyResult(report, plagiarismService.buildResult(matched, scores)));
+        stage("passages").record(() -> attachPassages(currentWork, current, report.getMatches()));
+        stage("save-report").record(() -> tx.executeWithoutResult(status -> {
             reportRepo.save(report);
-            throw new RuntimeException("Analysis failed", e);
+            matchStore.replace(report, currentWork, report.getMatches());
+        }));
+        recordLatency(report);
+    }
+
+    /**
+     * Scores the current work against one chunk of earlier works and adds the reportable ones to
+     * matched/kept. Stored scores are reused, only missing or stale pairs are compared and their
+     * scores stored. Returns the number of pairs compared.
+     */
+    private int compareChunk(SimilarityEngine engine, Work currentWork, TextArtifact current, List<WorkSummary> chunk,
+                             List<PlagiarismDetectionService.WorkContentPair> matched,
+                             Map<String, PlagiarismDetectionService.Score> kept) {
+        Map<String, PlagiarismDetectionService.Score> scores = new HashMap<>(stage("stored-scores").record(() ->
+                pairScores.find(engine.id(), currentWork.getId(), chunk.stream().map(WorkSummary::getId).toList())));
+        scores.values().removeIf(score -> !plagiarismService.isFresh(score));
+        meterRegistry.counter("analysis.pairs", "outcome", "stored").increment(scores.size());
+        List<WorkSummary> toCompare = chunk.stream().filter(w -> !scores.containsKey(w.getId())).toList();
+
+        // byte-identical files share the current artifact, their content is not fetched at all
+        Map<String, String> toLoad = fileIds(toCompare.stream().filter(w -> !sameContent(w, currentWork)).toList());
+        Map<String, TextArtifact> artifacts = stage("load").record(() -> artifactStore.getAll(toLoad));
+
+        List<PlagiarismDetectionService.WorkContentPair> pairsToCompare = new ArrayList<>();
+        for (WorkSummary other : toCompare) {
+            TextArtifact artifact = sameContent(other, currentWork) ? current : artifacts.get(other.getId());
+            if (artifact != null) {
+                pairsToCompare.add(toPair(other, artifact));
+            }
+        }
+        Map<String, PlagiarismDetectionService.Score> computed =
+                stage("compare").record(() -> plagiarismService.computeScores(engine, current, pairsToCompare));
+        stage("save-scores").record(() -> pairScores.save(engine.id(), currentWork.getId(), computed));
+        scores.putAll(computed);
+
+        for (WorkSummary other : chunk) {
+            PlagiarismDetectionService.Score score = scores.get(other.getId());
+            if (score != null && (plagiarismService.isReportable(score) || plagiarismService.isUnresolved(score))) {
+                matched.add(toPair(other, null));
+                kept.put(other.getId(), score);
+            }
         }
+        return pairsToCompare.size();
     }
 
-    private String getFileContent(String fileId) {
-        try {
-            ResponseEntity<Map> resp = restTemplate.exchange(
-                    fileStoringUrl + "/files/" + fileId + "/content",
-                    HttpMethod.GET, null, Map.class
-            );
-            if (resp.getBody() != null) {
-                return (String) resp.getBody().get("content");
+    // next keyset page of earlier works, after = last work of the previous page
+    private List<WorkSummary> earlierPage(Work currentWork, WorkSummary after) {
+        return workRepo.findEarlierPage(currentWork.getAssignmentId(), currentWork.getSubmittedAt(),
+                after == null ? EPOCH : after.getSubmittedAt(), after == null ? "" : after.getId(),
+                Limit.of(chunkSize));
+    }
+
+    // above the full-scan limit only earlier works sharing fingerprints are compared, in submission order
+    // bounded by analysis.corpus.max-candidates, so one chunk
+    private List<WorkSummary> findCorpusCandidates(Work currentWork, TextArtifact current) {
+        List<String> ids = fingerprintIndex.findCorpusCandidates(currentWork, current.getFingerprints());
+        return ids.isEmpty() ? List.of() : workRepo.findByIdInOrderBySubmittedAtAscIdAsc(ids);
+    }
+
+    private List<WorkSummary> findCandidates(Work currentWork, TextArtifact current) {
+        indexMissing(currentWork);
+        List<String> ids = fingerprintIndex.findCandidates(currentWork, current.getFingerprints());
+        List<WorkSummary> indexed = ids.isEmpty() ? List.of() : workRepo.findByIdInOrderBySubmittedAtAscIdAsc(ids);
+        if (currentWork.getContentHash() == null) {
+            return indexed;
+        }
+        // identical uploads exceed max-postings on every fingerprint once there are enough of them
+        Map<String, WorkSummary> candidates = new LinkedHashMap<>();
+        indexed.forEach(w -> candidates.put(w.getId(), w));
+        workRepo.findEarlierWithContent(currentWork.getAssignmentId(), currentWork.getContentHash(),
+                currentWork.getSubmittedAt()).forEach(w -> candidates.putIfAbsent(w.getId(), w));
+        return candidates.values().stream()
+                .sorted(Comparator.comparing(WorkSummary::getSubmittedAt).thenComparing(WorkSummary::getId))
+                .toList();
+    }
+
+    // earlier works submitted before the index existed are fingerprinted once, on first use
+    private void indexMissing(Work currentWork) {
+        List<String> missing = fingerprintIndex.findUnindexedEarlierWorks(currentWork);
+        for (int from = 0; from < missing.size(); from += chunkSize) {
+            List<WorkSummary> chunk = workRepo.findByIdInOrderBySubmittedAtAscIdAsc(
+                    missing.subList(from, Math.min(missing.size(), from + chunkSize)));
+            artifactStore.getAll(fileIds(chunk)).forEach((workId, artifact) ->
+                    fingerprintIndex.index(workId, currentWork.getAssignmentId(), artifact.getFingerprints()));
+        }
+    }
+
+    private static Map<String, String> fileIds(List<WorkSummary> works) {
+        Map<String, String> fileIds = new HashMap<>();
+        works.forEach(w -> fileIds.put(w.getId(), w.getFileId()));
+        return fileIds;
+    }
+
+    // only reported matches get passages, their artifacts are loaded again (usually from the cache);
+    // unresolved ones are the pairs too slow to compare and get none. Passages are found in normalized
+    // text and also reported with their offsets in the raw files
+    private void attachPassages(Work currentWork, TextArtifact current, List<MatchDetail> reported) {
+        List<MatchDetail> matches = reported.stream()
+                .filter(m -> !PlagiarismDetectionService.UNRESOLVED.equals(m.getVerdict()))
+                .toList();
+        if (matches.isEmpty()) {
+            return;
+        }
+        List<Work> works = workRepo.findAllById(matches.stream().map(MatchDetail::getMatchedWorkId).toList());
+        Map<String, TextArtifact> artifacts = artifactStore.getAll(works);
+        List<String> fileIds = new ArrayList<>(works.stream().map(Work::getFileId).toList());
+        fileIds.add(currentWork.getFileId());
+        Map<String, String> contents = fileClient.getFileContents(fileIds);
+        RawOffsets currentRaw = rawOffsets(contents.get(currentWork.getFileId()), current);
+        Map<String, String> fileIdByWork = works.stream().collect(Collectors.toMap(Work::getId, Work::getFileId));
+
+        PassageMatcher matcher = new PassageMatcher(current.getNormalized(), kgram, window);
+        for (MatchDetail match : matches) {
+            TextArtifact other = artifacts.get(match.getMatchedWorkId());
+            if (other == null) {
+                continue;
             }
-            throw new RuntimeException("Empty response");
-        } catch (Exception e) {
-            throw new RuntimeException("File Storing Service unavailable", e);
+            RawOffsets otherRaw = rawOffsets(contents.get(fileIdByWork.get(match.getMatchedWorkId())), other);
+            List<MatchPassage> passages = new ArrayList<>();
+            for (PassageMatcher.Passage p : matcher.match(other.getNormalized(),
+                    passageMinLength, passageMaxGap, maxPassages)) {
+                MatchPassage passage = new MatchPassage();
+                passage.setOffset(p.getOffset());
+                passage.setLength(p.getLength());
+                passage.setMatchedOffset(p.getMatchedOffset());
+                passage.setMatchedLength(p.getMatchedLength());
+                if (currentRaw != null && otherRaw != null) {
+                    passage.setRawOffset(currentRaw.start(p.getOffset()));
+                    passage.setRawLength(currentRaw.length(p.getOffset(), p.getLength()));
+                    passage.setMatchedRawOffset(otherRaw.start(p.getMatchedOffset()));
+                    passage.setMatchedRawLength(otherRaw.length(p.getMatchedOffset(), p.getMatchedLength()));
+                }
+                passages.add(passage);
+            }
+            match.setPassages(passages);
         }
     }
 
-    public String getWorkContent(String workId) {
-        Work work = workRepo.findById(workId)
-                .orElseThrow(() -> new RuntimeException("Work not found"));
-        return getFileContent(work.getFileId());
+    // null when the file is gone or no longer gives the stored normalized text
+    private static RawOffsets rawOffsets(String content, TextArtifact artifact) {
+        return content == null ? null : RawOffsets.of(content, artifact.getNormalized());
+    }
+
+    private void applyResult(Report report, PlagiarismResult result) {
+        report.setStatus("COMPLETED");
+        report.setPlagiarismDetected(result.getPlagiarismDetected());
+        report.setOriginalityPercent(result.getOriginalityPercent());
+        report.setVerdict(result.getVerdict());
+        report.setIncomplete(result.getIncomplete());
+        report.setMatches(result.getMatches());
+        report.setCompletedAt(LocalDateTime.now());
+    }
+
+    private static PlagiarismDetectionService.WorkContentPair toPair(Work work, TextArtifact artifact) {
+        return new PlagiarismDetectionService.WorkContentPair(work.getId(), work.getStudentName(),
+                work.getSubmittedAt().toString(), work.getAssignmentId(), artifact);
+    }
+
+    private static PlagiarismDetectionService.WorkContentPair toPair(WorkSummary work, TextArtifact artifact) {
+        return new PlagiarismDetectionService.WorkContentPair(work.getId(), work.getStudentName(),
+                work.getSubmittedAt().toString(), work.getAssignmentId(), artifact);
+    }
+
+    private static boolean sameContent(WorkSummary a, Work b) {
+        return a.getContentHash() != null && a.getContentHash().equals(b.getContentHash());
     }
 
     public List<Report> getReportsByWorkId(String workId) {
-        return reportRepo.findByWorkId(workId);
+        return withMatches(reportRepo.findByWorkId(workId));
     }
 
     public Report getReportById(String reportId) {
-        return reportRepo.findById(reportId)
+        Report report = reportRepo.findById(reportId)
                 .orElseThrow(() -> new RuntimeException("Report not found"));
+        return withMatches(List.of(report)).get(0);
+    }
+
+    public Map<String, Object> findMatches(ReportMatchStore.MatchFilter filter, int page, int size) {
+        return matchStore.query(filter, page, size);
+    }
+
+    // completed reports get their matches from report_matches in one query
+    private List<Report> withMatches(List<Report> reports) {
+        Map<String, List<MatchDetail>> matches = matchStore.findByReports(reports.stream()
+                .filter(r -> "COMPLETED".equals(r.getStatus())).map(Report::getId).toList());
+        for (Report report : reports) {
+            if ("COMPLETED".equals(report.getStatus())) {
+                report.setMatches(matches.getOrDefault(report.getId(), List.of()));
+            }
+        }
+        return reports;
     }
 }
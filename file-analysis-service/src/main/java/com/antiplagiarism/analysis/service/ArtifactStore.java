@@ -0,0 +1,184 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.engine.TextArtifact;
+import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.entity.WorkArtifact;
+import com.antiplagiarism.analysis.repository.WorkArtifactRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Per-work analysis artifacts: built once from the file content, persisted in work_artifacts
+ * and kept in a bounded in-memory cache. Later comparisons and word clouds read them
+ * instead of downloading and re-normalizing the file.
+ */
+@Service
+public class ArtifactStore {
+
+    private final WorkArtifactRepository artifactRepo;
+    private final FileStoringClient fileClient;
+    private final Cache<String, TextArtifact> cache;
+    private final int kgram;
+    private final int window;
+
+    public ArtifactStore(WorkArtifactRepository artifactRepo, FileStoringClient fileClient,
+                         @Value("${analysis.index.kgram:12}") int kgram,
+                         @Value("${analysis.index.window:16}") int window,
+                         @Value("${analysis.cache.artifact.max-mb:256}") long maxMb,
+                         MeterRegistry meterRegistry) {
+        this.artifactRepo = artifactRepo;
+        this.fileClient = fileClient;
+        this.kgram = kgram;
+        this.window = window;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMb * 1024 * 1024)
+                .weigher((String workId, TextArtifact artifact) -> (int) Math.min(Integer.MAX_VALUE, artifact.weight()))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "artifacts");
+    }
+
+    public TextArtifact get(Work work) {
+        TextArtifact artifact = getAll(List.of(work)).get(work.getId());
+        if (artifact == null) {
+            throw new RuntimeException("File not found: " + work.getFileId());
+        }
+        return artifact;
+    }
+
+    // works whose file is gone are left out of the result
+    public Map<String, TextArtifact> getAll(List<Work> works) {
+        Map<String, String> fileIds = new HashMap<>();
+        works.forEach(w -> fileIds.put(w.getId(), w.getFileId()));
+        return getAll(fileIds);
+    }
+
+    // same, for works known only by workId -> fileId (e.g. WorkSummary projections)
+    public Map<String, TextArtifact> getAll(Map<String, String> fileIdsByWorkId) {
+        return cache.getAll(fileIdsByWorkId.keySet(), missing -> load(missing, fileIdsByWorkId));
+    }
+
+    public Map<String, Object> getStats() {
+        return FileContentCache.statsOf(cache);
+    }
+
+    private Map<String, TextArtifact> load(Set<? extends String> workIds, Map<String, String> fileIds) {
+        Map<String, TextArtifact> result = new HashMap<>();
+        for (WorkArtifact stored : artifactRepo.findAllById(new ArrayList<String>(workIds))) {
+            result.put(stored.getWorkId(), decode(stored));
+        }
+
+        List<String> toBuild = new ArrayList<>();
+        for (String workId : workIds) {
+            if (!result.containsKey(workId)) {
+                toBuild.add(workId);
+            }
+        }
+        if (toBuild.isEmpty()) {
+            return result;
+        }
+
+        Map<String, String> contents = fileClient.getFileContents(toBuild.stream().map(fileIds::get).toList());
+        for (String workId : toBuild) {
+            String content = contents.get(fileIds.get(workId));
+            if (content != null) {
+                TextArtifact artifact = TextArtifact.build(content, kgram, window);
+                save(workId, artifact);
+                result.put(workId, artifact);
+            }
+        }
+        return result;
+    }
+
+    private void save(String workId, TextArtifact artifact) {
+        WorkArtifact entity = new WorkArtifact();
+        entity.setWorkId(workId);
+        entity.setContentHash(artifact.getContentHash());
+        entity.setNormalizedLength(artifact.getNormalized().length());
+        entity.setNormalizedText(deflate(artifact.getNormalized().getBytes(StandardCharsets.UTF_8)));
+        entity.setTokens(deflate(toBytes(artifact.getTokens())));
+        entity.setFingerprints(toBytes(artifact.getFingerprints()));
+        try {
+            artifactRepo.save(entity);
+        } catch (DataIntegrityViolationException ignored) {
+            // another worker stored the same artifact first
+        }
+    }
+
+    private TextArtifact decode(WorkArtifact stored) {
+        String normalized = new String(inflate(stored.getNormalizedText()), StandardCharsets.UTF_8);
+        ByteBuffer tokenBytes = ByteBuffer.wrap(inflate(stored.getTokens()));
+        int[] tokens = new int[tokenBytes.remaining() / Integer.BYTES];
+        tokenBytes.asIntBuffer().get(tokens);
+        ByteBuffer fpBytes = ByteBuffer.wrap(stored.getFingerprints());
+        long[] fingerprints = new long[fpBytes.remaining() / Long.BYTES];
+        fpBytes.asLongBuffer().get(fingerprints);
+        return new TextArtifact(normalized, tokens, fingerprints, stored.getContentHash());
+    }
+
+    private static byte[] toBytes(int[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * Integer.BYTES);
+        buf.asIntBuffer().put(values);
+        return buf.array();
+    }
+
+    private static byte[] toBytes(long[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * Long.BYTES);
+        buf.asLongBuffer().put(values);
+        return buf.array();
+    }
+
+    static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, data.length / 3));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    static byte[] inflate(byte[] data) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(data.length * 3);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && inflater.needsInput()) {
+                    throw new IllegalStateException("Truncated artifact data");
+                }
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted artifact data", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.engine.SimilarityEngine;
+import com.antiplagiarism.analysis.entity.AssignmentSettings;
+import com.antiplagiarism.analysis.repository.AssignmentSettingsRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Which similarity engine scores an assignment and whether its works are also searched for in
+ * other assignments. Pair scores are stored per engine id, so switching engines keeps the old
+ * scores; the next re-analysis or rescore of the assignment works with the new engine's scores only.
+ */
+@Service
+public class AssignmentSettingsService {
+
+    private final AssignmentSettingsRepository settingsRepo;
+    private final PlagiarismDetectionService plagiarismService;
+
+    @Value("${analysis.corpus.default:false}")
+    private boolean defaultCorpusSearch;
+
+    public AssignmentSettingsService(AssignmentSettingsRepository settingsRepo,
+                                     PlagiarismDetectionService plagiarismService) {
+        this.settingsRepo = settingsRepo;
+        this.plagiarismService = plagiarismService;
+    }
+
+    public SimilarityEngine getEngine(String assignmentId) {
+        return settingsRepo.findById(assignmentId)
+                .map(s -> plagiarismService.getEngine(s.getEngine()))
+                .orElseGet(plagiarismService::getDefaultEngine);
+    }
+
+    public boolean isCorpusSearch(String assignmentId) {
+        return settingsRepo.findById(assignmentId)
+                .map(AssignmentSettings::getCorpusSearch)
+                .orElse(defaultCorpusSearch);
+    }
+
+    // null leaves a setting as it is; an unknown engine name is rejected before anything is stored
+    public void update(String assignmentId, String engineName, Boolean corpusSearch) {
+        AssignmentSettings settings = settingsRepo.findById(assignmentId).orElseGet(AssignmentSettings::new);
+        settings.setAssignmentId(assignmentId);
+        if (engineName != null) {
+            settings.setEngine(plagiarismService.getEngine(engineName).name());
+        } else if (settings.getEngine() == null) {
+            settings.setEngine(plagiarismService.getDefaultEngine().name());
+        }
+        if (corpusSearch != null) {
+            settings.setCorpusSearch(corpusSearch);
+        }
+        settingsRepo.save(settings);
+    }
+
+    public Map<String, Object> describe(String assignmentId) {
+        SimilarityEngine engine = getEngine(assignmentId);
+        Map<String, Object> resp = new LinkedHashMap<>();
+        resp.put("assignmentId", assignmentId);
+        resp.put("engine", engine.name());
+        resp.put("algorithm", engine.id());
+        resp.put("corpusSearch", isCorpusSearch(assignmentId));
+        resp.put("custom", settingsRepo.existsById(assignmentId));
+        resp.put("availableEngines", plagiarismService.getEngineNames());
+        return resp;
+    }
+}
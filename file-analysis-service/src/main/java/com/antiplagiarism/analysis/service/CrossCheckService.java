@@ -0,0 +1,418 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.engine.CharLcsEngine;
+import com.antiplagiarism.analysis.engine.SimilarityEngine;
+import com.antiplagiarism.analysis.engine.TextArtifact;
+import com.antiplagiarism.analysis.entity.CrossCheckJob;
+import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.repository.CrossCheckJobRepository;
+import com.antiplagiarism.analysis.repository.WorkRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * All-pairs similarity of an assignment. Works are taken in submission order; for each one
+ * ("anchor") the later works it shares fingerprints with are compared against it (all later
+ * works for small assignments), so every candidate pair is scored exactly once. Scores go to
+ * pair_scores under the engine chosen for the assignment when the job starts, so pairs scored
+ * earlier with that engine by regular analysis or by an interrupted run are reused.
+ * The heartbeat renews the lease while the job runs and the cursor is saved after each anchor,
+ * both fenced by the token of the claim; a job whose owner died is picked up by the next poll
+ * and continues from the cursor, and a run that lost its lease stops. On completion works are grouped
+ * into clusters connected by reportable scores.
+ */
+@Service
+public class CrossCheckService {
+
+    private static final int INDEX_BATCH = 100;
+
+    private final CrossCheckJobRepository jobRepo;
+    private final WorkRepository workRepo;
+    private final ArtifactStore artifactStore;
+    private final FingerprintIndex fingerprintIndex;
+    private final PairScoreStore pairScores;
+    private final PlagiarismDetectionService plagiarismService;
+    private final AssignmentSettingsService settings;
+    private final ExecutorService crossCheckExecutor;
+    private final TransactionTemplate tx;
+    private final TaskScheduler scheduler;
+    private final ObjectMapper objectMapper;
+    private final String workerId;
+    // job id -> lease token of the claim this worker runs it under
+    private final Map<String, String> running = new ConcurrentHashMap<>();
+    // one poll at a time, see AnalysisJobQueue.pollLock
+    private final ReentrantLock pollLock = new ReentrantLock();
+
+    @Value("${analysis.crosscheck.jobs:1}")
+    private int maxJobs;
+
+    @Value("${analysis.crosscheck.lease-seconds:120}")
+    private long leaseSeconds;
+
+    @Value("${analysis.crosscheck.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${analysis.index.full-scan-limit:100}")
+    private int fullScanLimit;
+
+    public CrossCheckService(CrossCheckJobRepository jobRepo, WorkRepository workRepo,
+                             ArtifactStore artifactStore, FingerprintIndex fingerprintIndex,
+                             PairScoreStore pairScores, PlagiarismDetectionService plagiarismService,
+                             AssignmentSettingsService settings,
+                             @Qualifier("crossCheckExecutor") ExecutorService crossCheckExecutor,
+                             TransactionTemplate tx, TaskScheduler scheduler, ObjectMapper objectMapper,
+                             AnalysisJobQueue jobQueue) {
+        this.jobRepo = jobRepo;
+        this.workRepo = workRepo;
+        this.artifactStore = artifactStore;
+        this.fingerprintIndex = fingerprintIndex;
+        this.pairScores = pairScores;
+        this.plagiarismService = plagiarismService;
+        this.settings = settings;
+        this.crossCheckExecutor = crossCheckExecutor;
+        this.tx = tx;
+        this.scheduler = scheduler;
+        this.objectMapper = objectMapper;
+        this.workerId = jobQueue.getWorkerId();
+    }
+
+    // an assignment has at most one active job, starting it again returns that job
+    public CrossCheckJob start(String assignmentId) {
+        CrossCheckJob active = jobRepo.findFirstByAssignmentIdAndStatusIn(assignmentId, List.of("PENDING", "RUNNING"))
+                .orElse(null);
+        if (active != null) {
+            return active;
+        }
+        if (!workRepo.existsByAssignmentId(assignmentId)) {
+            throw new RuntimeException("No works in assignment " + assignmentId);
+        }
+        CrossCheckJob job = new CrossCheckJob();
+        job.setAssignmentId(assignmentId);
+        job.setEngine(settings.getEngine(assignmentId).name());
+        job = jobRepo.save(job);
+        scheduler.schedule(this::poll, Instant.now());
+        return job;
+    }
+
+    public CrossCheckJob getJob(String jobId) {
+        return jobRepo.findById(jobId)
+                .orElseThrow(() -> new RuntimeException("Cross-check job not found"));
+    }
+
+    public List<Map<String, Object>> getClusters(CrossCheckJob job) {
+        if (job.getClusters() == null) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(job.getClusters(), new TypeReference<>() {});
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException("Corrupted cluster data", e);
+        }
+    }
+
+    // scored pairs of the job's assignment at or above minScore, most similar first
+    public List<Map<String, Object>> getPairs(CrossCheckJob job, double minScore, int limit) {
+        List<Map<String, Object>> pairs = new ArrayList<>();
+        pairScores.forEachInAssignment(engineOf(job).id(), job.getAssignmentId(), (pair, score) -> {
+            if (!score.isUpperBound() && score.getPercent() >= minScore) {
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("workA", pair[0]);
+                row.put("workB", pair[1]);
+                row.put("similarityPercent", score.getPercent());
+                row.put("verdict", plagiarismService.getVerdict(score.getPercent()));
+                pairs.add(row);
+            }
+        });
+        pairs.sort(Comparator.comparing((Map<String, Object> row) -> (Double) row.get("similarityPercent")).reversed());
+        return pairs.size() > limit ? new ArrayList<>(pairs.subList(0, limit)) : pairs;
+    }
+
+    @Scheduled(fixedDelayString = "${analysis.crosscheck.poll-interval-ms:5000}")
+    public void poll() {
+        pollLock.lock();
+        try {
+            claimAndDispatch();
+        } finally {
+            pollLock.unlock();
+        }
+    }
+
+    private void claimAndDispatch() {
+        int free = maxJobs - running.size();
+        if (free <= 0) {
+            return;
+        }
+        // a job this worker still runs is not claimed again even if its lease ran out
+        List<String> own = new ArrayList<>(running.keySet());
+        own.add("");
+        List<CrossCheckJob> claimed = tx.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<CrossCheckJob> jobs = jobRepo.lockClaimable(now, own, free);
+            for (CrossCheckJob job : jobs) {
+                job.setStatus("RUNNING");
+                job.setLeaseOwner(workerId);
+                job.setLeaseToken(UUID.randomUUID().toString());
+                job.setLeaseExpiresAt(now.plusSeconds(leaseSeconds));
+                job.setAttempts(job.getAttempts() == null ? 1 : job.getAttempts() + 1);
+                if (job.getStartedAt() == null) {
+                    job.setStartedAt(now);
+                }
+            }
+            return jobRepo.saveAll(jobs);
+        });
+        if (claimed == null) {
+            return;
+        }
+        for (CrossCheckJob job : claimed) {
+            if (job.getAttempts() > maxAttempts) {
+                // claimed and lost too many times, most likely it kills the worker or cannot record its end
+                finish(job, "FAILED", null, "Gave up after " + maxAttempts + " attempts");
+                continue;
+            }
+            running.put(job.getId(), job.getLeaseToken());
+            try {
+                crossCheckExecutor.execute(() -> {
+                    try {
+                        run(job);
+                    } finally {
+                        running.remove(job.getId());
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // the lease runs out and the job is claimed again
+                running.remove(job.getId());
+            }
+        }
+    }
+
+    private SimilarityEngine engineOf(CrossCheckJob job) {
+        return plagiarismService.getEngine(job.getEngine() == null ? CharLcsEngine.NAME : job.getEngine());
+    }
+
+    private void run(CrossCheckJob job) {
+        try {
+            SimilarityEngine engine = engineOf(job);
+            List<Work> works = new ArrayList<>(workRepo.findByAssignmentIdOrderBySubmittedAtAsc(job.getAssignmentId()));
+            works.sort(Comparator.comparing(Work::getSubmittedAt).thenComparing(Work::getId));
+            Map<String, Integer> position = new HashMap<>();
+            for (int i = 0; i < works.size(); i++) {
+                position.put(works.get(i).getId(), i);
+            }
+            job.setTotalWorks(works.size());
+            if (!saveProgress(job, job.getProcessedWorks(), job.getComparedPairs(), job.getReusedPairs())) {
+                return;
+            }
+
+            boolean fullScan = works.size() <= fullScanLimit + 1;
+            // identical uploads share all their fingerprints, so a large group of them exceeds max-postings
+            // and is not found through the index; they are paired by content hash instead
+            Map<String, List<String>> sameContent = new HashMap<>();
+            if (!fullScan) {
+                indexMissing(job.getAssignmentId(), works, position);
+                for (Work w : works) {
+                    if (w.getContentHash() != null) {
+                        sameContent.computeIfAbsent(w.getContentHash(), k -> new ArrayList<>()).add(w.getId());
+                    }
+                }
+            }
+
+            long compared = job.getComparedPairs();
+            long reused = job.getReusedPairs();
+            for (int i = job.getProcessedWorks(); i < works.size(); i++) {
+                Work anchor = works.get(i);
+                List<Work> later;
+                if (fullScan) {
+                    later = works.subList(i + 1, works.size());
+                } else {
+                    int from = i;
+                    later = Stream.concat(fingerprintIndex.findAllCandidates(anchor).stream(),
+                                    sameContent.getOrDefault(anchor.getContentHash(), List.of()).stream())
+                            .distinct()
+                            .filter(id -> position.containsKey(id) && position.get(id) > from)
+                            .sorted(Comparator.comparing(position::get))
+                            .map(id -> works.get(position.get(id)))
+                            .toList();
+                }
+
+                if (!later.isEmpty()) {
+                    Map<String, PlagiarismDetectionService.Score> known =
+                            pairScores.find(engine.id(), anchor.getId(), later.stream().map(Work::getId).toList());
+                    known.values().removeIf(score -> !plagiarismService.isFresh(score));
+                    List<Work> toCompare = later.stream().filter(w -> !known.containsKey(w.getId())).toList();
+                    reused += known.size();
+
+                    if (!toCompare.isEmpty()) {
+                        TextArtifact anchorArtifact = artifactStore.get(anchor);
+                        Map<String, TextArtifact> artifacts = artifactStore.getAll(toCompare);
+                        List<PlagiarismDetectionService.WorkContentPair> pairs = new ArrayList<>();
+                        for (Work other : toCompare) {
+                            TextArtifact artifact = artifacts.get(other.getId());
+                            if (artifact != null) {
+                                pairs.add(new PlagiarismDetectionService.WorkContentPair(other.getId(),
+                                        other.getStudentName(), other.getSubmittedAt().toString(), artifact));
+                            }
+                        }
+                        Map<String, PlagiarismDetectionService.Score> computed =
+                                plagiarismService.computeScores(engine, anchorArtifact, pairs);
+                        pairScores.save(engine.id(), anchor.getId(), computed);
+                        compared += computed.size();
+                    }
+                }
+
+                if (!saveProgress(job, i + 1, compared, reused)) {
+                    return; // lease lost, whoever holds it now finishes the job
+                }
+            }
+
+            String clusters = objectMapper.writeValueAsString(buildClusters(engine, job.getAssignmentId(), works));
+            finish(job, "COMPLETED", clusters, null);
+        } catch (Downstream.RefusedException e) {
+            // File Storing Service is refusing calls; the job resumes from its cursor on a later claim
+            // without using up an attempt
+            tx.executeWithoutResult(status -> jobRepo.releaseLease(job.getId(), job.getLeaseToken()));
+        } catch (Exception e) {
+            finish(job, "FAILED", null, errorMessage(e));
+        }
+    }
+
+    // exception messages can be long (SQL included), the column is not
+    private static String errorMessage(Exception e) {
+        String message = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+        return message.length() <= CrossCheckJob.ERROR_LENGTH
+                ? message : message.substring(0, CrossCheckJob.ERROR_LENGTH - 3) + "...";
+    }
+
+    private boolean saveProgress(CrossCheckJob job, int processed, long compared, long reused) {
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(leaseSeconds);
+        Integer updated = tx.execute(status -> jobRepo.saveProgress(job.getId(), job.getLeaseToken(),
+                job.getTotalWorks(), processed, compared, reused, expiresAt));
+        return updated != null && updated > 0;
+    }
+
+    // one anchor can take longer than the lease, so running jobs are renewed independently of progress
+    @Scheduled(fixedDelayString = "${analysis.crosscheck.heartbeat-ms:30000}")
+    public void heartbeat() {
+        LocalDateTime expiresAt = LocalDateTime.now().plusSeconds(leaseSeconds);
+        running.forEach((jobId, token) -> tx.executeWithoutResult(status ->
+                jobRepo.extendLease(jobId, token, expiresAt)));
+    }
+
+    private void finish(CrossCheckJob claimed, String status, String clusters, String error) {
+        tx.executeWithoutResult(s -> jobRepo.findById(claimed.getId()).ifPresent(job -> {
+            if (!claimed.getLeaseToken().equals(job.getLeaseToken()) || !"RUNNING".equals(job.getStatus())) {
+                return;
+            }
+            job.setStatus(status);
+            job.setClusters(clusters);
+            job.setError(error);
+            job.setLeaseOwner(null);
+            job.setLeaseToken(null);
+            job.setLeaseExpiresAt(null);
+            job.setCompletedAt(LocalDateTime.now());
+            jobRepo.save(job);
+        }));
+    }
+
+    // the candidate join needs every work in the fingerprint index
+    private void indexMissing(String assignmentId, List<Work> works, Map<String, Integer> position) {
+        List<Work> missing = fingerprintIndex.findUnindexedWorks(assignmentId).stream()
+                .filter(position::containsKey)
+                .map(id -> works.get(position.get(id)))
+                .toList();
+        for (int from = 0; from < missing.size(); from += INDEX_BATCH) {
+            List<Work> batch = missing.subList(from, Math.min(missing.size(), from + INDEX_BATCH));
+            Map<String, TextArtifact> artifacts = artifactStore.getAll(batch);
+            for (Work work : batch) {
+                TextArtifact artifact = artifacts.get(work.getId());
+                if (artifact != null) {
+                    fingerprintIndex.index(work, artifact.getFingerprints());
+                }
+            }
+        }
+    }
+
+    // connected components (union-find) over pairs with a reportable score, largest first
+    private List<Map<String, Object>> buildClusters(SimilarityEngine engine, String assignmentId, List<Work> works) {
+        Map<String, Integer> index = new HashMap<>();
+        for (int i = 0; i < works.size(); i++) {
+            index.put(works.get(i).getId(), i);
+        }
+        int[] parent = new int[works.size()];
+        for (int i = 0; i < parent.length; i++) {
+            parent[i] = i;
+        }
+        double[] maxScore = new double[works.size()];
+        double threshold = plagiarismService.getSuspiciousThreshold();
+
+        pairScores.forEachInAssignment(engine.id(), assignmentId, (pair, score) -> {
+            Integer a = index.get(pair[0]);
+            Integer b = index.get(pair[1]);
+            if (a == null || b == null || score.isUpperBound() || score.getPercent() < threshold) {
+                return;
+            }
+            int ra = find(parent, a);
+            int rb = find(parent, b);
+            if (ra != rb) {
+                parent[rb] = ra;
+                maxScore[ra] = Math.max(maxScore[ra], maxScore[rb]);
+            }
+            maxScore[ra] = Math.max(maxScore[ra], score.getPercent());
+        });
+
+        Map<Integer, List<Work>> members = new LinkedHashMap<>();
+        for (int i = 0; i < works.size(); i++) {
+            members.computeIfAbsent(find(parent, i), k -> new ArrayList<>()).add(works.get(i));
+        }
+        List<Map<String, Object>> clusters = new ArrayList<>();
+        for (Map.Entry<Integer, List<Work>> e : members.entrySet()) {
+            if (e.getValue().size() < 2) {
+                continue;
+            }
+            List<Map<String, Object>> cluster = new ArrayList<>();
+            for (Work w : e.getValue()) {
+                Map<String, Object> member = new LinkedHashMap<>();
+                member.put("workId", w.getId());
+                member.put("studentName", w.getStudentName());
+                member.put("submittedAt", w.getSubmittedAt().toString());
+                cluster.add(member);
+            }
+            Map<String, Object> c = new LinkedHashMap<>();
+            c.put("size", cluster.size());
+            c.put("maxSimilarityPercent", maxScore[e.getKey()]);
+            c.put("works", cluster);
+            clusters.add(c);
+        }
+        clusters.sort(Comparator.comparing((Map<String, Object> c) -> (Integer) c.get("size")).reversed());
+        return clusters;
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+}
@@ -0,0 +1,60 @@
+package com.antiplagiarism.analysis.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+// stored files never change, so content fetched from File Storing Service is cached by fileId
+@Service
+public class FileContentCache {
+
+    private final Cache<String, String> cache;
+
+    public FileContentCache(@Value("${analysis.cache.content.max-mb:256}") long maxMb,
+                            MeterRegistry meterRegistry) {
+        // W-TinyLFU eviction, weighed by approximate heap size of the string
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMb * 1024 * 1024)
+                .weigher((String fileId, String content) -> 64 + content.length() * 2)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "file-content");
+    }
+
+    public String get(String fileId, Function<String, String> loader) {
+        return cache.get(fileId, loader);
+    }
+
+    // cached entries plus whatever the bulk loader returns for the rest
+    public Map<String, String> getAll(Collection<String> fileIds,
+                                      Function<Set<? extends String>, Map<String, String>> bulkLoader) {
+        return cache.getAll(fileIds, bulkLoader);
+    }
+
+    public Map<String, Object> getStats() {
+        return statsOf(cache);
+    }
+
+    static Map<String, Object> statsOf(Cache<String, ?> cache) {
+        CacheStats stats = cache.stats();
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("entries", cache.estimatedSize());
+        result.put("weightBytes", cache.policy().eviction().map(e -> e.weightedSize().orElse(0)).orElse(0L));
+        result.put("hits", stats.hitCount());
+        result.put("misses", stats.missCount());
+        result.put("hitRate", stats.hitRate());
+        result.put("evictions", stats.evictionCount());
+        result.put("loadFailures", stats.loadFailureCount());
+        return result;
+    }
+}
@@ -0,0 +1,178 @@
+package com.antiplagiarism.analysis.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// reads file contents from File Storing Service through FileContentCache
+@Service
+public class FileStoringClient {
+
+    private static final int FETCH_BATCH = 200;
+
+    private final FileContentCache contentCache;
+    private final Downstream fileStoring;
+    private final ObjectMapper objectMapper;
+    private final Timer rawFetchTimer;
+    private final Timer batchFetchTimer;
+    private final DistributionSummary fetchedBytes;
+    private final DistributionSummary batchSize;
+
+    @Value("${file.storing.service.url}")
+    private String fileStoringUrl;
+
+    public FileStoringClient(FileContentCache contentCache, @Qualifier("fileStoring") Downstream fileStoring,
+                             ObjectMapper objectMapper, MeterRegistry meterRegistry) {
+        this.contentCache = contentCache;
+        this.fileStoring = fileStoring;
+        this.objectMapper = objectMapper;
+        this.rawFetchTimer = fetchTimer(meterRegistry, "raw");
+        this.batchFetchTimer = fetchTimer(meterRegistry, "batch");
+        this.fetchedBytes = DistributionSummary.builder("analysis.file.fetch.bytes")
+                .description("Response bytes read per request to File Storing Service")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.batchSize = DistributionSummary.builder("analysis.file.fetch.files")
+                .description("Files requested per batch request")
+                .register(meterRegistry);
+    }
+
+    private static Timer fetchTimer(MeterRegistry registry, String mode) {
+        return Timer.builder("analysis.file.fetch")
+                .description("Latency of one request to File Storing Service, body included")
+                .tag("mode", mode)
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    // cached contents first, the rest from the raw endpoint (one file) or in batches over the NDJSON endpoint;
+    // files that no longer exist are left out
+    public Map<String, String> getFileContents(List<String> fileIds) {
+        return contentCache.getAll(fileIds, this::fetchFileContents);
+    }
+
+    private Map<String, String> fetchFileContents(Set<? extends String> fileIds) {
+        List<String> ids = new ArrayList<>(fileIds);
+        Map<String, String> result = new HashMap<>();
+        if (ids.size() == 1) {
+            fetchRaw(ids.get(0), result);
+            return result;
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+
+        for (int from = 0; from < ids.size(); from += FETCH_BATCH) {
+            List<String> batch = ids.subList(from, Math.min(ids.size(), from + FETCH_BATCH));
+            batchSize.record(batch.size());
+            Timer.Sample sample = Timer.start();
+            try {
+                fileStoring.call(rt -> rt.execute(fileStoringUrl + "/files/content/batch", HttpMethod.POST,
+                        rt.httpEntityCallback(new HttpEntity<>(batch, headers)),
+                        response -> {
+                            CountingInputStream body = new CountingInputStream(response.getBody());
+                            readContentLines(body, result);
+                            fetchedBytes.record(body.count);
+                            return null;
+                        }));
+            } catch (Downstream.RefusedException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new RuntimeException("File Storing Service unavailable", e);
+            } finally {
+                sample.stop(batchFetchTimer);
+            }
+        }
+        return result;
+    }
+
+    // a single file is read from the raw endpoint: plain bytes, no JSON escaping
+    private void fetchRaw(String fileId, Map<String, String> into) {
+        Timer.Sample sample = Timer.start();
+        try {
+            fileStoring.call(rt -> rt.execute(fileStoringUrl + "/files/{fileId}/raw", HttpMethod.GET, null,
+                    response -> {
+                        if (response.getStatusCode().is2xxSuccessful()) {
+                            byte[] bytes = response.getBody().readAllBytes();
+                            fetchedBytes.record(bytes.length);
+                            into.put(fileId, new String(bytes, StandardCharsets.UTF_8));
+                        }
+                        return null;
+                    }, fileId));
+        } catch (HttpClientErrorException.NotFound e) {
+            // file is gone, left out of the result
+        } catch (Downstream.RefusedException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new RuntimeException("File Storing Service unavailable", e);
+        } finally {
+            sample.stop(rawFetchTimer);
+        }
+    }
+
+    // NDJSON objects are read token by token straight from the response stream
+    private void readContentLines(InputStream body, Map<String, String> into) throws IOException {
+        try (JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            while (parser.nextToken() == JsonToken.START_OBJECT) {
+                String fileId = null;
+                String content = null;
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    if ("fileId".equals(field)) {
+                        fileId = parser.getText();
+                    } else if ("content".equals(field)) {
+                        content = parser.getText();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+                if (fileId != null && content != null) {
+                    into.put(fileId, content);
+                }
+            }
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.entity.Work;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+// persistent inverted index hash -> works, used to pick comparison candidates within an assignment
+// and, for assignments that opt in, across the whole corpus; fingerprints come from the work's TextArtifact
+@Service
+public class FingerprintIndex {
+
+    private static final int INSERT_BATCH = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    @Value("${analysis.index.min-shared:3}")
+    private int minShared;
+
+    @Value("${analysis.index.max-candidates:100}")
+    private int maxCandidates;
+
+    // a fingerprint shared by more works of the assignment than this is skipped (boilerplate, task statements)
+    @Value("${analysis.index.max-postings:200}")
+    private int maxPostings;
+
+    // corpus search reads at most this many fingerprints of the work...
+    @Value("${analysis.corpus.query-fingerprints:256}")
+    private int corpusQueryFingerprints;
+
+    // ...and skips a fingerprint shared by more works than this (boilerplate, task statements)
+    @Value("${analysis.corpus.max-postings:50}")
+    private int corpusMaxPostings;
+
+    @Value("${analysis.corpus.max-candidates:50}")
+    private int corpusMaxCandidates;
+
+    // cross-check skips a fingerprint shared by more works of the assignment than this
+    @Value("${analysis.crosscheck.max-postings:200}")
+    private int crossCheckMaxPostings;
+
+    public FingerprintIndex(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // idempotent, re-indexing a work only inserts what is missing
+    public void index(Work work, long[] fingerprints) {
+        index(work.getId(), work.getAssignmentId(), fingerprints);
+    }
+
+    public void index(String workId, String assignmentId, long[] fingerprints) {
+        String sql = "INSERT INTO fingerprints (work_id, hash, assignment_id) VALUES (?, ?, ?) ON CONFLICT DO NOTHING";
+        for (int from = 0; from < fingerprints.length; from += INSERT_BATCH) {
+            int to = Math.min(fingerprints.length, from + INSERT_BATCH);
+            List<Object[]> rows = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                rows.add(new Object[]{workId, fingerprints[i], assignmentId});
+            }
+            jdbc.batchUpdate(sql, rows);
+        }
+    }
+
+    // earlier works of the same assignment that have no fingerprints yet (submitted before the index existed)
+    public List<String> findUnindexedEarlierWorks(Work work) {
+        return jdbc.queryForList(
+                "SELECT w.id FROM works w WHERE w.assignment_id = ? AND w.submitted_at < ? " +
+                "AND NOT EXISTS (SELECT 1 FROM fingerprints f WHERE f.work_id = w.id)",
+                String.class, work.getAssignmentId(), Timestamp.valueOf(work.getSubmittedAt()));
+    }
+
+    // works of the assignment without fingerprints
+    public List<String> findUnindexedWorks(String assignmentId) {
+        return jdbc.queryForList(
+                "SELECT w.id FROM works w WHERE w.assignment_id = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM fingerprints f WHERE f.work_id = w.id)",
+                String.class, assignmentId);
+    }
+
+    /**
+     * Every other work of the assignment sharing at least min-shared fingerprints, regardless of
+     * submission time. Like the corpus search, each fingerprint reads at most max-postings + 1
+     * rows of idx_fingerprints_hash and one with more postings (boilerplate, the task statement)
+     * is ignored, so an anchor costs at most its fingerprints times max-postings rows.
+     */
+    public List<String> findAllCandidates(Work work) {
+        return jdbc.queryForList(
+                "SELECT c.work_id FROM fingerprints f1 " +
+                "CROSS JOIN LATERAL (SELECT array_agg(f.work_id) AS ids, COUNT(*) AS postings FROM " +
+                "(SELECT work_id FROM fingerprints WHERE hash = f1.hash AND assignment_id = f1.assignment_id " +
+                "LIMIT ?) f) p " +
+                "CROSS JOIN LATERAL unnest(p.ids) AS c(work_id) " +
+                "WHERE f1.work_id = ? AND p.postings <= ? AND c.work_id <> f1.work_id " +
+                "GROUP BY c.work_id HAVING COUNT(*) >= ?",
+                String.class, crossCheckMaxPostings + 1, work.getId(), crossCheckMaxPostings, minShared);
+    }
+
+    /**
+     * Earlier works of other assignments sharing at least min-shared fingerprints, most similar
+     * first. The query is bounded whatever the corpus size: only the smallest query-fingerprints
+     * hashes of the work are looked up (the same bottom-k sample for every document, so shared
+     * text still shares sampled hashes), each through idx_fingerprints_hash reading at most
+     * max-postings + 1 rows, and a hash with more postings than that is ignored. Works that were
+     * never indexed are not found.
+     */
+    public List<String> findCorpusCandidates(Work work, long[] fingerprints) {
+        if (fingerprints.length == 0) {
+            return List.of();
+        }
+        // fingerprints are sorted ascending, the prefix is the bottom-k sample
+        int sample = Math.min(fingerprints.length, corpusQueryFingerprints);
+        // postings are counted over all assignments, candidates of the work's own assignment are left to
+        // the regular search; later works are not sources
+        String sql = "SELECT w.id FROM (SELECT c.work_id, COUNT(*) AS shared FROM unnest(?) AS q(hash) " +
+                "CROSS JOIN LATERAL (SELECT array_agg(f.work_id) FILTER (WHERE f.assignment_id <> ?) AS ids, " +
+                "COUNT(*) AS postings FROM (SELECT work_id, assignment_id FROM fingerprints " +
+                "WHERE hash = q.hash LIMIT ?) f) p " +
+                "CROSS JOIN LATERAL unnest(p.ids) AS c(work_id) " +
+                "WHERE p.postings <= ? GROUP BY c.work_id HAVING COUNT(*) >= ?) c " +
+                "JOIN works w ON w.id = c.work_id WHERE w.submitted_at < ? " +
+                "ORDER BY c.shared DESC LIMIT ?";
+        return jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            Long[] boxed = new Long[sample];
+            for (int i = 0; i < sample; i++) {
+                boxed[i] = fingerprints[i];
+            }
+            ps.setArray(1, con.createArrayOf("bigint", boxed));
+            ps.setString(2, work.getAssignmentId());
+            ps.setInt(3, corpusMaxPostings + 1);
+            ps.setInt(4, corpusMaxPostings);
+            ps.setInt(5, Math.min(minShared, sample));
+            ps.setTimestamp(6, Timestamp.valueOf(work.getSubmittedAt()));
+            ps.setInt(7, corpusMaxCandidates);
+            return ps;
+        }, (rs, i) -> rs.getString(1));
+    }
+
+    /**
+     * Earlier works sharing at least min-shared fingerprints, most similar first. Each fingerprint
+     * reads at most max-postings + 1 rows of idx_fingerprints_hash and one shared by more works of
+     * the assignment is ignored, so an upload costs at most its fingerprints times max-postings rows
+     * however large the assignment. Identical copies share every fingerprint and are not found
+     * once there are more than max-postings of them; the caller adds them by content hash.
+     */
+    public List<String> findCandidates(Work work, long[] fingerprints) {
+        if (fingerprints.length == 0) {
+            return List.of();
+        }
+        String sql = "SELECT c.work_id FROM unnest(?) AS q(hash) " +
+                "CROSS JOIN LATERAL (SELECT array_agg(f.work_id) AS ids, COUNT(*) AS postings FROM " +
+                "(SELECT work_id FROM fingerprints WHERE hash = q.hash AND assignment_id = ? LIMIT ?) f) p " +
+                "CROSS JOIN LATERAL unnest(p.ids) AS c(work_id) " +
+                "JOIN works w ON w.id = c.work_id " +
+                "WHERE p.postings <= ? AND w.submitted_at < ? " +
+                "GROUP BY c.work_id HAVING COUNT(*) >= ? ORDER BY COUNT(*) DESC LIMIT ?";
+        return jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            Long[] boxed = new Long[fingerprints.length];
+            for (int i = 0; i < fingerprints.length; i++) {
+                boxed[i] = fingerprints[i];
+            }
+            Array hashes = con.createArrayOf("bigint", boxed);
+            ps.setArray(1, hashes);
+            ps.setString(2, work.getAssignmentId());
+            ps.setInt(3, maxPostings + 1);
+            ps.setInt(4, maxPostings);
+            ps.setTimestamp(5, Timestamp.valueOf(work.getSubmittedAt()));
+            ps.setInt(6, minShared);
+            ps.setInt(7, maxCandidates);
+            return ps;
+        }, (rs, i) -> rs.getString(1));
+    }
+}
@@ -0,0 +1,103 @@
+package com.antiplagiarism.analysis.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+// pair_scores access: pairs are stored once, ordered (work_a < work_b), under the id of the engine that scored them
+@Service
+public class PairScoreStore {
+
+    private static final int INSERT_BATCH = 1000;
+
+    private final JdbcTemplate jdbc;
+
+    public PairScoreStore(JdbcTemplate jdbc) {
+        this.jdbc = jdbc;
+    }
+
+    // stored scores of workId against the given works, keyed by the other work's id
+    public Map<String, PlagiarismDetectionService.Score> find(String algorithm, String workId,
+                                                              Collection<String> otherIds) {
+        Map<String, PlagiarismDetectionService.Score> result = new HashMap<>();
+        if (otherIds.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT work_a, work_b, score, upper_bound FROM pair_scores WHERE algorithm = ? " +
+                "AND ((work_a = ? AND work_b = ANY (?)) OR (work_b = ? AND work_a = ANY (?)))";
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            Array ids = con.createArrayOf("varchar", otherIds.toArray());
+            ps.setString(1, algorithm);
+            ps.setString(2, workId);
+            ps.setArray(3, ids);
+            ps.setString(4, workId);
+            ps.setArray(5, ids);
+            return ps;
+        }, rs -> {
+            String other = workId.equals(rs.getString(1)) ? rs.getString(2) : rs.getString(1);
+            result.put(other, new PlagiarismDetectionService.Score(rs.getDouble(3), rs.getBoolean(4)));
+        });
+        return result;
+    }
+
+    // every stored pair whose both works belong to the assignment, streamed row by row
+    public void forEachInAssignment(String algorithm, String assignmentId,
+                                    BiConsumer<String[], PlagiarismDetectionService.Score> consumer) {
+        jdbc.query("SELECT p.work_a, p.work_b, p.score, p.upper_bound FROM pair_scores p " +
+                        "JOIN works a ON a.id = p.work_a JOIN works b ON b.id = p.work_b " +
+                        "WHERE p.algorithm = ? AND a.assignment_id = ? AND b.assignment_id = ?",
+                rs -> {
+                    consumer.accept(new String[]{rs.getString(1), rs.getString(2)},
+                            new PlagiarismDetectionService.Score(rs.getDouble(3), rs.getBoolean(4)));
+                },
+                algorithm, assignmentId, assignmentId);
+    }
+
+    // stored pairs of a work of the assignment with a work of another assignment (corpus search),
+    // passed as {work in the assignment, other work}
+    public void forEachOutsideAssignment(String algorithm, String assignmentId,
+                                         BiConsumer<String[], PlagiarismDetectionService.Score> consumer) {
+        jdbc.query("SELECT p.work_a, p.work_b, p.score, p.upper_bound FROM works w " +
+                        "JOIN pair_scores p ON p.work_a = w.id JOIN works o ON o.id = p.work_b " +
+                        "WHERE w.assignment_id = ? AND p.algorithm = ? AND o.assignment_id <> ? " +
+                        "UNION ALL " +
+                        "SELECT p.work_b, p.work_a, p.score, p.upper_bound FROM works w " +
+                        "JOIN pair_scores p ON p.work_b = w.id JOIN works o ON o.id = p.work_a " +
+                        "WHERE w.assignment_id = ? AND p.algorithm = ? AND o.assignment_id <> ?",
+                rs -> {
+                    consumer.accept(new String[]{rs.getString(1), rs.getString(2)},
+                            new PlagiarismDetectionService.Score(rs.getDouble(3), rs.getBoolean(4)));
+                },
+                assignmentId, algorithm, assignmentId, assignmentId, algorithm, assignmentId);
+    }
+
+    // upsert, a recomputed pair replaces its stale row
+    public void save(String algorithm, String workId, Map<String, PlagiarismDetectionService.Score> scores) {
+        String sql = "INSERT INTO pair_scores (work_a, work_b, algorithm, score, upper_bound, computed_at) " +
+                "VALUES (?, ?, ?, ?, ?, now()) ON CONFLICT (work_a, work_b, algorithm) " +
+                "DO UPDATE SET score = EXCLUDED.score, upper_bound = EXCLUDED.upper_bound, computed_at = now()";
+        List<Object[]> rows = new ArrayList<>(Math.min(scores.size(), INSERT_BATCH));
+        for (Map.Entry<String, PlagiarismDetectionService.Score> e : scores.entrySet()) {
+            String other = e.getKey();
+            boolean first = workId.compareTo(other) < 0;
+            rows.add(new Object[]{first ? workId : other, first ? other : workId, algorithm,
+                    e.getValue().getPercent(), e.getValue().isUpperBound()});
+            if (rows.size() == INSERT_BATCH) {
+                jdbc.batchUpdate(sql, rows);
+                rows.clear();
+            }
+        }
+        if (!rows.isEmpty()) {
+            jdbc.batchUpdate(sql, rows);
+        }
+    }
+}
@@ -2,106 +2,331 @@ package com.antiplagiarism.analysis.service;
 
 import com.antiplagiarism.analysis.dto.MatchDetail;
 import com.antiplagiarism.analysis.dto.PlagiarismResult;
+import com.antiplagiarism.analysis.engine.BitParallelLcs;
+import com.antiplagiarism.analysis.engine.CharLcsEngine;
+import com.antiplagiarism.analysis.engine.ShingleJaccardEngine;
+import com.antiplagiarism.analysis.engine.SimilarityEngine;
+import com.antiplagiarism.analysis.engine.TextArtifact;
+import com.antiplagiarism.analysis.engine.TokenLcsEngine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class PlagiarismDetectionService {
 
-    // similarity = (2 * LCS) / (len1 + len2) * 100
+    // verdict of a match whose comparison timed out, and of a report such a match could still raise
+    public static final String UNRESOLVED = "UNRESOLVED";
+
+    // available engines by name; an assignment picks one, analysis.engine.default applies otherwise
+    private final Map<String, SimilarityEngine> engines = new LinkedHashMap<>();
+    private final ExecutorService comparisonExecutor;
+    private final long comparisonTimeoutNanos;
+    private final MeterRegistry meterRegistry;
+
+    // how pairs were decided, engine work done and time per comparison
+    private final Counter exactPairs;
+    private final Counter rejectedPairs;
+    private final Counter comparedPairs;
+    private final Counter timedOutPairs;
+    private final Map<String, Counter> engineWork = new HashMap<>();
+    private final Map<String, Timer> engineTimers = new HashMap<>();
+
+    @Value("${analysis.engine.default:char-lcs}")
+    private String defaultEngine = CharLcsEngine.NAME;
+
+    // matches below the suspicious threshold are not reported
+    @Value("${analysis.threshold.suspicious:50}")
+    private double suspiciousThreshold = 50.0;
+
+    @Value("${analysis.threshold.plagiarism:80}")
+    private double plagiarismThreshold = 80.0;
+
+    public PlagiarismDetectionService(@Qualifier("comparisonExecutor") ExecutorService comparisonExecutor,
+                                      @Value("${analysis.compare.timeout-ms:60000}") long comparisonTimeoutMs,
+                                      MeterRegistry meterRegistry) {
+        this.comparisonExecutor = comparisonExecutor;
+        this.comparisonTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(comparisonTimeoutMs);
+        this.meterRegistry = meterRegistry;
+        this.exactPairs = pairCounter(meterRegistry, "exact");
+        this.rejectedPairs = pairCounter(meterRegistry, "rejected");
+        this.comparedPairs = pairCounter(meterRegistry, "compared");
+        this.timedOutPairs = pairCounter(meterRegistry, "timeout");
+        register(new CharLcsEngine());
+        register(new TokenLcsEngine());
+        register(new ShingleJaccardEngine());
+    }
+
+    private void register(SimilarityEngine engine) {
+        engines.put(engine.name(), engine);
+        engineWork.put(engine.name(), Counter.builder("analysis.similarity.work")
+                .description("Work done by compared pairs: LCS matrix cells, shingles for shingle-jaccard")
+                .tag("engine", engine.name())
+                .register(meterRegistry));
+        engineTimers.put(engine.name(), Timer.builder("analysis.similarity")
+                .description("Time of one similarity comparison")
+                .tag("engine", engine.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+    }
+
+    private static Counter pairCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("analysis.pairs")
+                .description("Compared pairs by how they were decided")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    public SimilarityEngine getEngine(String name) {
+        SimilarityEngine engine = engines.get(name);
+        if (engine == null) {
+            throw new RuntimeException("Unknown similarity engine: " + name + ", available: " + engines.keySet());
+        }
+        return engine;
+    }
+
+    public SimilarityEngine getDefaultEngine() {
+        return getEngine(defaultEngine);
+    }
+
+    public List<String> getEngineNames() {
+        return new ArrayList<>(engines.keySet());
+    }
+
+    // char-lcs similarity of two raw texts: (2 * LCS) / (len1 + len2) * 100
     public double calculateSimilarity(String text1, String text2) {
         if (text1 == null || text2 == null || text1.isEmpty() || text2.isEmpty()) {
             return 0.0;
         }
-
         String norm1 = normalize(text1);
         String norm2 = normalize(text2);
+        if (norm1.isEmpty() || norm2.isEmpty()) {
+            return 0.0;
+        }
+        int lcs = BitParallelLcs.length(norm1, norm2);
+        return SimilarityEngine.round((2.0 * lcs) / (norm1.length() + norm2.length()) * 100);
+    }
 
-        int lcs = lcs(norm1, norm2);
-        double similarity = (2.0 * lcs) / (norm1.length() + norm2.length()) * 100;
+    public String normalize(String text) {
+        return TextArtifact.normalize(text);
+    }
 
-        return Math.round(similarity * 100.0) / 100.0;
+    public String getVerdict(double similarity) {
+        if (similarity >= plagiarismThreshold) return "PLAGIARISM";
+        if (similarity >= suspiciousThreshold) return "SUSPICIOUS";
+        return "ORIGINAL";
     }
 
-    private String normalize(String text) {
-        return text.toLowerCase().replaceAll("\\s+", " ").trim();
+    public double getSuspiciousThreshold() { return suspiciousThreshold; }
+    public double getPlagiarismThreshold() { return plagiarismThreshold; }
+
+    public PlagiarismResult analyzePlagiarism(TextArtifact current, List<WorkContentPair> previousWorks) {
+        return buildResult(previousWorks, computeScores(getDefaultEngine(), current, previousWorks));
     }
 
-    // longest common subsequence - dynamic programming
-    private int lcs(String a, String b) {
-        int m = a.length();
-        int n = b.length();
-        int[][] dp = new int[m + 1][n + 1];
+    // comparisons run in parallel on the comparison pool.
+    // Pairs are pre-filtered: exact copies score 100 right away, pairs whose score bound is below
+    // the suspicious threshold keep just that bound, only the rest are scored by the engine.
+    // A timed-out pair does not block the report: it keeps its bound, which is at or above the
+    // threshold, as an upper-bound score, so it stays unresolved instead of counting as a low score.
+    public Map<String, Score> computeScores(SimilarityEngine engine, TextArtifact current,
+                                            List<WorkContentPair> previousWorks) {
+        Counter work = engineWork.get(engine.name());
+        Timer timer = engineTimers.get(engine.name());
+        List<Future<Score>> futures = new ArrayList<>(previousWorks.size());
+        double[] bounds = new double[previousWorks.size()];
+        for (WorkContentPair prev : previousWorks) {
+            TextArtifact other = prev.getArtifact();
+            if (isExactCopy(current, other)) {
+                exactPairs.increment();
+                futures.add(CompletableFuture.completedFuture(new Score(100.0, false)));
+                continue;
+            }
+            double bound = engine.upperBound(current, other);
+            if (bound < suspiciousThreshold) {
+                rejectedPairs.increment();
+                futures.add(CompletableFuture.completedFuture(new Score(bound, true)));
+                continue;
+            }
+            bounds[futures.size()] = bound;
+            futures.add(comparisonExecutor.submit(() -> timer.record(() -> {
+                Score score = new Score(engine.similarity(current, other, comparisonTimeoutNanos), false);
+                comparedPairs.increment();
+                work.increment((double) engine.cost(current, other));
+                return score;
+            })));
+        }
 
-        for (int i = 1; i <= m; i++) {
-            for (int j = 1; j <= n; j++) {
-                if (a.charAt(i - 1) == b.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1] + 1;
-                } else {
-                    dp[i][j] = Math.max(dp[i - 1][j], dp[i][j - 1]);
-                }
+        Map<String, Score> scores = new HashMap<>();
+        for (int i = 0; i < previousWorks.size(); i++) {
+            Score score = awaitScore(futures, i);
+            if (score == null) {
+                timedOutPairs.increment();
+                score = new Score(bounds[i], true);
             }
+            scores.put(previousWorks.get(i).getWorkId(), score);
         }
-        return dp[m][n];
+        return scores;
     }
 
-    public String getVerdict(double similarity) {
-        if (similarity >= 80.0) return "PLAGIARISM";
-        if (similarity >= 50.0) return "SUSPICIOUS";
-        return "ORIGINAL";
+    // a stored score can be reused unless it is a bound that the current threshold no longer rules out
+    public boolean isFresh(Score score) {
+        return !score.isUpperBound() || score.getPercent() < suspiciousThreshold;
+    }
+
+    // a computed score at or above the suspicious threshold, i.e. one that appears in a report
+    public boolean isReportable(Score score) {
+        return !score.isUpperBound() && score.getPercent() >= suspiciousThreshold;
     }
 
-    public PlagiarismResult analyzePlagiarism(String currentContent, List<WorkContentPair> previousWorks) {
+    // a bound that does not rule the pair out, left by a timed-out comparison
+    public boolean isUnresolved(Score score) {
+        return !isFresh(score);
+    }
+
+    /**
+     * Works are taken in the given (submission) order, so matches and verdict do not depend on
+     * which scores were computed now and which were stored; works without a score are skipped.
+     * Unresolved pairs are listed as UNRESOLVED matches with their bound as the percent and mark
+     * the result incomplete. If one of them could raise the verdict, the verdict is UNRESOLVED,
+     * so a timeout under load never produces a lower verdict than the pair could give.
+     */
+    public PlagiarismResult buildResult(List<WorkContentPair> previousWorks, Map<String, Score> scores) {
         List<MatchDetail> matches = new ArrayList<>();
         double maxSimilarity = 0.0;
+        double maxUnresolved = 0.0;
         String verdict = "ORIGINAL";
 
         for (WorkContentPair prev : previousWorks) {
-            double sim = calculateSimilarity(currentContent, prev.getContent());
+            Score score = scores.get(prev.getWorkId());
+            if (score == null) {
+                continue;
+            }
+            double sim = score.getPercent();
+            boolean unresolved = isUnresolved(score);
 
-            if (sim >= 50.0) {
+            if (unresolved || isReportable(score)) {
                 MatchDetail match = new MatchDetail();
                 match.setMatchedWorkId(prev.getWorkId());
                 match.setStudentName(prev.getStudentName());
                 match.setSimilarityPercent(sim);
                 match.setSubmittedAt(prev.getSubmittedAt());
-                match.setVerdict(getVerdict(sim));
+                match.setAssignmentId(prev.getAssignmentId());
+                match.setVerdict(unresolved ? UNRESOLVED : getVerdict(sim));
                 matches.add(match);
 
-                if (sim > maxSimilarity) {
+                if (unresolved) {
+                    maxUnresolved = Math.max(maxUnresolved, sim);
+                } else if (sim > maxSimilarity) {
                     maxSimilarity = sim;
                     verdict = getVerdict(sim);
                 }
             }
         }
 
+        boolean incomplete = maxUnresolved > 0;
+        if (incomplete && rank(getVerdict(maxUnresolved)) > rank(verdict)) {
+            verdict = UNRESOLVED;
+        }
+
         PlagiarismResult result = new PlagiarismResult();
         result.setOriginalityPercent(Math.max(0, 100 - maxSimilarity));
-        result.setPlagiarismDetected(maxSimilarity >= 50.0);
+        result.setPlagiarismDetected(maxSimilarity >= suspiciousThreshold);
         result.setVerdict(verdict);
+        result.setIncomplete(incomplete);
         result.setMatches(matches);
 
         return result;
     }
 
+    private static int rank(String verdict) {
+        return switch (verdict) {
+            case "PLAGIARISM" -> 2;
+            case "SUSPICIOUS" -> 1;
+            default -> 0;
+        };
+    }
+
+    // equal raw content or equal normalized text, every engine would return 100% anyway
+    private static boolean isExactCopy(TextArtifact a, TextArtifact b) {
+        if (a.getNormalized().isEmpty()) {
+            return false;
+        }
+        return a == b
+                || (a.getContentHash() != null && a.getContentHash().equals(b.getContentHash()))
+                || a.getNormalized().equals(b.getNormalized());
+    }
+
+    private Score awaitScore(List<Future<Score>> futures, int index) {
+        try {
+            return futures.get(index).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CancellationException) {
+                return null;
+            }
+            futures.forEach(f -> f.cancel(true));
+            throw new RuntimeException("Comparison failed", e.getCause());
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Analysis interrupted", e);
+        }
+    }
+
+    // similarity percent of a pair; upperBound = the pair was rejected or timed out and percent is only its bound
+    public static class Score {
+        private final double percent;
+        private final boolean upperBound;
+
+        public Score(double percent, boolean upperBound) {
+            this.percent = percent;
+            this.upperBound = upperBound;
+        }
+
+        public double getPercent() { return percent; }
+        public boolean isUpperBound() { return upperBound; }
+    }
+
+    // artifact may be null when only the work's identity is needed (buildResult)
     public static class WorkContentPair {
         private String workId;
         private String studentName;
         private String submittedAt;
-        private String content;
+        private String assignmentId;
+        private TextArtifact artifact;
+
+        public WorkContentPair(String workId, String studentName, String submittedAt, TextArtifact artifact) {
+            this(workId, studentName, submittedAt, null, artifact);
+        }
 
-        public WorkContentPair(String workId, String studentName, String submittedAt, String content) {
+        public WorkContentPair(String workId, String studentName, String submittedAt, String assignmentId,
+                               TextArtifact artifact) {
             this.workId = workId;
             this.studentName = studentName;
             this.submittedAt = submittedAt;
-            this.content = content;
+            this.assignmentId = assignmentId;
+            this.artifact = artifact;
         }
 
         public String getWorkId() { return workId; }
         public String getStudentName() { return studentName; }
         public String getSubmittedAt() { return submittedAt; }
-        public String getContent() { return content; }
+        public String getAssignmentId() { return assignmentId; }
+        public TextArtifact getArtifact() { return artifact; }
     }
 }
@@ -0,0 +1,292 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.dto.MatchDetail;
+import com.antiplagiarism.analysis.dto.MatchPassage;
+import com.antiplagiarism.analysis.entity.Report;
+import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.repository.WorkSummary;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// report_matches access: matches are written with their report and queried with indexed filters
+@Service
+public class ReportMatchStore {
+
+    private static final int INSERT_BATCH = 1000;
+    private static final int MIGRATE_BATCH = 500;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    private static final String INSERT_SQL = "INSERT INTO report_matches (report_id, matched_work_id, work_id, " +
+            "assignment_id, student_name, matched_student_name, matched_submitted_at, matched_assignment_id, " +
+            "similarity_percent, verdict, latest, passages) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?) " +
+            "ON CONFLICT DO NOTHING";
+
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final ObjectMapper objectMapper;
+
+    public ReportMatchStore(JdbcTemplate jdbc, TransactionTemplate tx, ObjectMapper objectMapper) {
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.objectMapper = objectMapper;
+    }
+
+    // the report's matches replace whatever it had and become the work's latest; call inside the report's transaction
+    public void replace(Report report, Work work, List<MatchDetail> matches) {
+        replace(report, work.getId(), work.getAssignmentId(), work.getStudentName(), matches);
+    }
+
+    public void replace(Report report, WorkSummary work, List<MatchDetail> matches) {
+        replace(report, work.getId(), work.getAssignmentId(), work.getStudentName(), matches);
+    }
+
+    private void replace(Report report, String workId, String assignmentId, String studentName,
+                         List<MatchDetail> matches) {
+        jdbc.update("UPDATE report_matches SET latest = false WHERE work_id = ? AND report_id <> ? AND latest",
+                workId, report.getId());
+        jdbc.update("DELETE FROM report_matches WHERE report_id = ?", report.getId());
+        List<Object[]> rows = new ArrayList<>(matches.size());
+        for (MatchDetail m : matches) {
+            rows.add(row(report.getId(), workId, assignmentId, studentName, m, true));
+        }
+        insert(rows);
+    }
+
+    // matches of each report, in submission order of the matched works
+    public Map<String, List<MatchDetail>> findByReports(Collection<String> reportIds) {
+        Map<String, List<MatchDetail>> result = new HashMap<>();
+        if (reportIds.isEmpty()) {
+            return result;
+        }
+        String sql = "SELECT report_id, matched_work_id, matched_student_name, similarity_percent, " +
+                "matched_submitted_at, COALESCE(matched_assignment_id, assignment_id), verdict, passages " +
+                "FROM report_matches WHERE report_id = ANY (?) " +
+                "ORDER BY matched_submitted_at, matched_work_id";
+        jdbc.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("varchar", reportIds.toArray()));
+            return ps;
+        }, rs -> {
+            Timestamp submittedAt = rs.getTimestamp(5);
+            result.computeIfAbsent(rs.getString(1), k -> new ArrayList<>()).add(new MatchDetail(
+                    rs.getString(2), rs.getString(3), rs.getDouble(4),
+                    submittedAt == null ? null : submittedAt.toLocalDateTime().toString(), rs.getString(6),
+                    rs.getString(7), decodePassages(rs.getString(8))));
+        });
+        return result;
+    }
+
+    /**
+     * One page of matches, most similar first. Every filter is optional; studentName is the
+     * analyzed work's student, matchedStudentName the student whose earlier work was matched.
+     * Only matches of each work's latest report unless latestOnly is false.
+     */
+    public Map<String, Object> query(MatchFilter filter, int page, int size) {
+        size = Math.max(1, Math.min(size, MAX_PAGE_SIZE));
+        page = Math.max(0, page);
+        StringBuilder sql = new StringBuilder("SELECT report_id, work_id, student_name, assignment_id, " +
+                "matched_work_id, matched_student_name, matched_submitted_at, similarity_percent, verdict, " +
+                "COALESCE(matched_assignment_id, assignment_id) FROM report_matches WHERE similarity_percent >= ?");
+        List<Object> args = new ArrayList<>();
+        args.add(filter.minSimilarity);
+        condition(sql, args, "assignment_id", filter.assignmentId);
+        condition(sql, args, "work_id", filter.workId);
+        condition(sql, args, "matched_work_id", filter.matchedWorkId);
+        condition(sql, args, "student_name", filter.studentName);
+        condition(sql, args, "matched_student_name", filter.matchedStudentName);
+        condition(sql, args, "verdict", filter.verdict);
+        if (filter.latestOnly) {
+            sql.append(" AND latest");
+        }
+        // one extra row tells whether there is a next page without counting everything
+        sql.append(" ORDER BY similarity_percent DESC, report_id, matched_work_id LIMIT ? OFFSET ?");
+        args.add(size + 1);
+        args.add((long) page * size);
+
+        List<Map<String, Object>> rows = jdbc.query(sql.toString(), (rs, i) -> {
+            Map<String, Object> row = new LinkedHashMap<>();
+            row.put("reportId", rs.getString(1));
+            row.put("workId", rs.getString(2));
+            row.put("studentName", rs.getString(3));
+            row.put("assignmentId", rs.getString(4));
+            row.put("matchedWorkId", rs.getString(5));
+            row.put("matchedStudentName", rs.getString(6));
+            Timestamp submittedAt = rs.getTimestamp(7);
+            row.put("matchedSubmittedAt", submittedAt == null ? null : submittedAt.toLocalDateTime().toString());
+            row.put("similarityPercent", rs.getDouble(8));
+            row.put("verdict", rs.getString(9));
+            row.put("matchedAssignmentId", rs.getString(10));
+            return row;
+        }, args.toArray());
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("page", page);
+        result.put("size", size);
+        result.put("hasNext", rows.size() > size);
+        result.put("matches", rows.size() > size ? rows.subList(0, size) : rows);
+        return result;
+    }
+
+    private static void condition(StringBuilder sql, List<Object> args, String column, String value) {
+        if (value != null && !value.isBlank()) {
+            sql.append(" AND ").append(column).append(" = ?");
+            args.add(value);
+        }
+    }
+
+    /**
+     * Reports completed before report_matches existed keep their matches as JSON in
+     * reports.details. They are moved here once, in batches, and details is cleared; a
+     * report whose JSON cannot be read is left as is.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateLegacyDetails() {
+        String lastId = "";
+        while (true) {
+            List<Object[]> batch = jdbc.query("SELECT r.id, r.work_id, r.details, w.student_name, w.assignment_id " +
+                            "FROM reports r LEFT JOIN works w ON w.id = r.work_id " +
+                            "WHERE r.details IS NOT NULL AND r.id > ? ORDER BY r.id LIMIT ?",
+                    (rs, i) -> new Object[]{rs.getString(1), rs.getString(2), rs.getString(3),
+                            rs.getString(4), rs.getString(5)},
+                    lastId, MIGRATE_BATCH);
+            if (batch.isEmpty()) {
+                return;
+            }
+            lastId = (String) batch.get(batch.size() - 1)[0];
+            migrate(batch);
+        }
+    }
+
+    private void migrate(List<Object[]> batch) {
+        List<Object[]> rows = new ArrayList<>();
+        List<String> migrated = new ArrayList<>();
+        for (Object[] report : batch) {
+            List<MatchDetail> matches;
+            try {
+                matches = objectMapper.readValue((String) report[2], new TypeReference<List<MatchDetail>>() {});
+            } catch (Exception e) {
+                continue;
+            }
+            // a report whose work is gone has nothing to point its matches at
+            if (report[4] != null && matches != null) {
+                for (MatchDetail m : matches) {
+                    rows.add(row((String) report[0], (String) report[1], (String) report[4], (String) report[3], m, false));
+                }
+            }
+            migrated.add((String) report[0]);
+        }
+        if (migrated.isEmpty()) {
+            return;
+        }
+        tx.executeWithoutResult(status -> {
+            insert(rows);
+            // a migrated report is latest unless a later completed report of the same work exists
+            updateByIds("UPDATE report_matches m SET latest = NOT EXISTS (" +
+                    "SELECT 1 FROM reports r1 JOIN reports r2 ON r2.work_id = r1.work_id " +
+                    "WHERE r1.id = m.report_id AND r2.status = 'COMPLETED' AND r2.completed_at > r1.completed_at) " +
+                    "WHERE m.report_id = ANY (?)", migrated);
+            updateByIds("UPDATE reports SET details = NULL WHERE id = ANY (?)", migrated);
+        });
+    }
+
+    private void updateByIds(String sql, List<String> ids) {
+        jdbc.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("varchar", ids.toArray()));
+            return ps;
+        });
+    }
+
+    private Object[] row(String reportId, String workId, String assignmentId, String studentName,
+                         MatchDetail m, boolean latest) {
+        LocalDateTime submittedAt = m.getSubmittedAt() == null ? null : LocalDateTime.parse(m.getSubmittedAt());
+        // matches from before corpus search are always from the work's own assignment
+        String matchedAssignmentId = m.getAssignmentId() == null ? assignmentId : m.getAssignmentId();
+        return new Object[]{reportId, m.getMatchedWorkId(), workId, assignmentId, studentName, m.getStudentName(),
+                submittedAt == null ? null : Timestamp.valueOf(submittedAt), matchedAssignmentId,
+                m.getSimilarityPercent(), m.getVerdict(), latest, encodePassages(m.getPassages())};
+    }
+
+    // arrays instead of objects, a report can carry a few thousand passages;
+    // four normalized offsets, followed by four raw ones when both files were available
+    private String encodePassages(List<MatchPassage> passages) {
+        if (passages == null) {
+            return null;
+        }
+        int[][] encoded = new int[passages.size()][];
+        for (int i = 0; i < encoded.length; i++) {
+            MatchPassage p = passages.get(i);
+            encoded[i] = p.getRawOffset() == null
+                    ? new int[]{p.getOffset(), p.getLength(), p.getMatchedOffset(), p.getMatchedLength()}
+                    : new int[]{p.getOffset(), p.getLength(), p.getMatchedOffset(), p.getMatchedLength(),
+                            p.getRawOffset(), p.getRawLength(), p.getMatchedRawOffset(), p.getMatchedRawLength()};
+        }
+        try {
+            return objectMapper.writeValueAsString(encoded);
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to encode passages", e);
+        }
+    }
+
+    private List<MatchPassage> decodePassages(String json) {
+        if (json == null) {
+            return null;
+        }
+        try {
+            List<MatchPassage> passages = new ArrayList<>();
+            for (int[] p : objectMapper.readValue(json, int[][].class)) {
+                passages.add(p.length < 8
+                        ? new MatchPassage(p[0], p[1], p[2], p[3], null, null, null, null)
+                        : new MatchPassage(p[0], p[1], p[2], p[3], p[4], p[5], p[6], p[7]));
+            }
+            return passages;
+        } catch (Exception e) {
+            throw new RuntimeException("Corrupted passage data", e);
+        }
+    }
+
+    private void insert(List<Object[]> rows) {
+        for (int from = 0; from < rows.size(); from += INSERT_BATCH) {
+            jdbc.batchUpdate(INSERT_SQL, rows.subList(from, Math.min(rows.size(), from + INSERT_BATCH)));
+        }
+    }
+
+    // optional filters of query(); blank values are ignored
+    public static class MatchFilter {
+        private final String assignmentId;
+        private final String workId;
+        private final String matchedWorkId;
+        private final String studentName;
+        private final String matchedStudentName;
+        private final String verdict;
+        private final double minSimilarity;
+        private final boolean latestOnly;
+
+        public MatchFilter(String assignmentId, String workId, String matchedWorkId, String studentName,
+                           String matchedStudentName, String verdict, double minSimilarity, boolean latestOnly) {
+            this.assignmentId = assignmentId;
+            this.workId = workId;
+            this.matchedWorkId = matchedWorkId;
+            this.studentName = studentName;
+            this.matchedStudentName = matchedStudentName;
+            this.verdict = verdict;
+            this.minSimilarity = minSimilarity;
+            this.latestOnly = latestOnly;
+        }
+    }
+}
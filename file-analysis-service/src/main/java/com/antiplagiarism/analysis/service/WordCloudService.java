@@ -2,6 +2,8 @@ package com.antiplagiarism.analysis.service;
 
 import org.springframework.stereotype.Service;
 
+import java.io.IOException;
+import java.io.Reader;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -21,29 +23,50 @@ public class WordCloudService {
     );
 
     private static final int MIN_WORD_LEN = 3;
+    private static final int READ_BUFFER = 8192;
 
     public List<WordFrequency> generateWordCloud(String text, int maxWords) {
         if (text == null || text.isEmpty()) return Collections.emptyList();
 
-        Map<String, Integer> counts = new HashMap<>();
-        String[] words = text.toLowerCase().replaceAll("[^a-zа-яё\\s]", " ").split("\\s+");
+        WordCounter counter = new WordCounter();
+        for (int i = 0, n = text.length(); i < n; i++) {
+            counter.accept(text.charAt(i));
+        }
+        return counter.top(maxWords);
+    }
 
-        for (String word : words) {
-            word = word.trim();
-            if (word.length() >= MIN_WORD_LEN && !STOP_WORDS.contains(word)) {
-                counts.merge(word, 1, Integer::sum);
+    // same as above but reads the text in chunks, so the whole content never has to be in memory
+    public List<WordFrequency> generateWordCloud(Reader reader, int maxWords) throws IOException {
+        WordCounter counter = new WordCounter();
+        char[] buf = new char[READ_BUFFER];
+        int n;
+        while ((n = reader.read(buf)) != -1) {
+            for (int i = 0; i < n; i++) {
+                counter.accept(buf[i]);
             }
         }
+        return counter.top(maxWords);
+    }
 
-        return counts.entrySet().stream()
-                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
-                .limit(maxWords)
-                .map(e -> new WordFrequency(e.getKey(), e.getValue()))
-                .collect(Collectors.toList());
+    // complete frequency table, most frequent first, ties alphabetically
+    public List<WordFrequency> frequencies(String text) {
+        return generateWordCloud(text, Integer.MAX_VALUE);
+    }
+
+    // top maxWords of a table returned by frequencies(), with font sizes
+    public WordCloudResult sizedTop(List<WordFrequency> frequencies, int maxWords) {
+        return withSizes(frequencies.subList(0, Math.max(0, Math.min(maxWords, frequencies.size()))));
     }
 
     public WordCloudResult generateWordCloudWithSizes(String text, int maxWords) {
-        List<WordFrequency> freqs = generateWordCloud(text, maxWords);
+        return withSizes(generateWordCloud(text, maxWords));
+    }
+
+    public WordCloudResult generateWordCloudWithSizes(Reader reader, int maxWords) throws IOException {
+        return withSizes(generateWordCloud(reader, maxWords));
+    }
+
+    private WordCloudResult withSizes(List<WordFrequency> freqs) {
         if (freqs.isEmpty()) return new WordCloudResult(Collections.emptyList(), 0);
 
         int maxFreq = freqs.get(0).getFrequency();
@@ -102,4 +125,173 @@ public class WordCloudService {
         public List<WordWithSize> getWords() { return words; }
         public int getTotalWordsAnalyzed() { return totalWordsAnalyzed; }
     }
+
+    /**
+     * Single-pass word counter. Word characters are lowercased a-z, а-я and ё, everything else
+     * separates words. Words are kept once in a shared char arena and counted in an
+     * open-addressing table, so no String is created per token; Strings are built only for
+     * the words that make it into the result. Stop words are pre-inserted and flagged.
+     */
+    private static final class WordCounter {
+
+        private static final int STOP = -1;
+
+        private char[] word = new char[32];
+        private int wordLen;
+        private int wordHash;
+
+        private char[] arena = new char[4096];
+        private int arenaLen;
+
+        // per entry: start in arena, length, hash, count (STOP for stop words)
+        private int[] starts = new int[256];
+        private int[] lengths = new int[256];
+        private int[] hashes = new int[256];
+        private int[] counts = new int[256];
+        private int size;
+
+        // slot -> entry index + 1, 0 = empty
+        private int[] table = new int[512];
+
+        WordCounter() {
+            for (String stop : STOP_WORDS) {
+                if (stop.length() < MIN_WORD_LEN) continue;
+                for (int i = 0; i < stop.length(); i++) append(stop.charAt(i));
+                counts[find()] = STOP;
+                wordLen = 0;
+                wordHash = 0;
+            }
+        }
+
+        void accept(char c) {
+            char lc = Character.toLowerCase(c);
+            if ((lc >= 'a' && lc <= 'z') || (lc >= 'а' && lc <= 'я') || lc == 'ё') {
+                append(lc);
+            } else if (wordLen > 0) {
+                endWord();
+            }
+        }
+
+        List<WordFrequency> top(int k) {
+            if (wordLen > 0) endWord();
+            if (k <= 0) return Collections.emptyList();
+
+            // min-heap of the best k entries, the root is the weakest one
+            int[] heap = new int[Math.min(k, size)];
+            int heapSize = 0;
+            for (int e = 0; e < size; e++) {
+                if (counts[e] <= 0) continue;
+                if (heapSize < heap.length) {
+                    heap[heapSize] = e;
+                    siftUp(heap, heapSize++);
+                } else if (better(e, heap[0])) {
+                    heap[0] = e;
+                    siftDown(heap, heapSize);
+                }
+            }
+
+            WordFrequency[] result = new WordFrequency[heapSize];
+            for (int i = heapSize - 1; i >= 0; i--) {
+                int e = heap[0];
+                result[i] = new WordFrequency(new String(arena, starts[e], lengths[e]), counts[e]);
+                heap[0] = heap[i];
+                siftDown(heap, i);
+            }
+            return Arrays.asList(result);
+        }
+
+        private void append(char c) {
+            if (wordLen == word.length) word = Arrays.copyOf(word, wordLen * 2);
+            word[wordLen++] = c;
+            wordHash = 31 * wordHash + c;
+        }
+
+        private void endWord() {
+            if (wordLen >= MIN_WORD_LEN) {
+                int e = find();
+                if (counts[e] != STOP) counts[e]++;
+            }
+            wordLen = 0;
+            wordHash = 0;
+        }
+
+        // entry index of the current word, inserted with count 0 if absent
+        private int find() {
+            int h = wordHash ^ (wordHash >>> 16);
+            int mask = table.length - 1;
+            for (int slot = h & mask; ; slot = (slot + 1) & mask) {
+                int ref = table[slot];
+                if (ref == 0) return insert(slot);
+                int e = ref - 1;
+                if (hashes[e] == wordHash && lengths[e] == wordLen
+                        && Arrays.equals(arena, starts[e], starts[e] + wordLen, word, 0, wordLen)) {
+                    return e;
+                }
+            }
+        }
+
+        private int insert(int slot) {
+            if (arenaLen + wordLen > arena.length) {
+                arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaLen + wordLen));
+            }
+            System.arraycopy(word, 0, arena, arenaLen, wordLen);
+            if (size == starts.length) {
+                int cap = size * 2;
+                starts = Arrays.copyOf(starts, cap);
+                lengths = Arrays.copyOf(lengths, cap);
+                hashes = Arrays.copyOf(hashes, cap);
+                counts = Arrays.copyOf(counts, cap);
+            }
+            int e = size++;
+            starts[e] = arenaLen;
+            lengths[e] = wordLen;
+            hashes[e] = wordHash;
+            counts[e] = 0;
+            arenaLen += wordLen;
+            table[slot] = e + 1;
+            if (size * 2 > table.length) rehash();
+            return e;
+        }
+
+        private void rehash() {
+            int[] grown = new int[table.length * 2];
+            int mask = grown.length - 1;
+            for (int e = 0; e < size; e++) {
+                int h = hashes[e] ^ (hashes[e] >>> 16);
+                int slot = h & mask;
+                while (grown[slot] != 0) slot = (slot + 1) & mask;
+                grown[slot] = e + 1;
+            }
+            table = grown;
+        }
+
+        // higher count first, ties broken alphabetically
+        private boolean better(int a, int b) {
+            if (counts[a] != counts[b]) return counts[a] > counts[b];
+            return Arrays.compare(arena, starts[a], starts[a] + lengths[a],
+                    arena, starts[b], starts[b] + lengths[b]) < 0;
+        }
+
+        private void siftUp(int[] heap, int i) {
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (!better(heap[parent], heap[i])) break;
+                int t = heap[parent]; heap[parent] = heap[i]; heap[i] = t;
+                i = parent;
+            }
+        }
+
+        private void siftDown(int[] heap, int size) {
+            int i = 0;
+            while (true) {
+                int l = 2 * i + 1;
+                if (l >= size) break;
+                int r = l + 1;
+                int worst = (r < size && better(heap[l], heap[r])) ? r : l;
+                if (!better(heap[i], heap[worst])) break;
+                int t = heap[i]; heap[i] = heap[worst]; heap[worst] = t;
+                i = worst;
+            }
+        }
+    }
 }
@@ -0,0 +1,123 @@
+package com.antiplagiarism.analysis.service;
+
+import com.antiplagiarism.analysis.engine.TextArtifact;
+import com.antiplagiarism.analysis.entity.Work;
+import com.antiplagiarism.analysis.entity.WordCloud;
+import com.antiplagiarism.analysis.repository.WordCloudRepository;
+import com.antiplagiarism.analysis.repository.WorkRepository;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Word frequency tables of works. A work's content never changes, so its full table is
+ * computed once (at analysis time or on the first request), persisted in word_clouds and
+ * kept in a bounded in-memory cache; each request only slices the top maxWords.
+ */
+@Service
+public class WordCloudStore {
+
+    private final WordCloudRepository wordCloudRepo;
+    private final WorkRepository workRepo;
+    private final ArtifactStore artifactStore;
+    private final WordCloudService wordCloudService;
+    private final Cache<String, List<WordCloudService.WordFrequency>> cache;
+
+    public WordCloudStore(WordCloudRepository wordCloudRepo, WorkRepository workRepo,
+                          ArtifactStore artifactStore, WordCloudService wordCloudService,
+                          @Value("${analysis.cache.wordcloud.max-mb:64}") long maxMb,
+                          MeterRegistry meterRegistry) {
+        this.wordCloudRepo = wordCloudRepo;
+        this.workRepo = workRepo;
+        this.artifactStore = artifactStore;
+        this.wordCloudService = wordCloudService;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxMb * 1024 * 1024)
+                .weigher((String workId, List<WordCloudService.WordFrequency> freqs) -> weight(freqs))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "word-clouds");
+    }
+
+    public WordCloudService.WordCloudResult get(String workId, int maxWords) {
+        List<WordCloudService.WordFrequency> freqs = cache.get(workId, this::load);
+        return wordCloudService.sizedTop(freqs, maxWords);
+    }
+
+    // called by the analysis worker, so the first dashboard request is already a cache hit
+    public void warm(Work work, TextArtifact artifact) {
+        if (cache.getIfPresent(work.getId()) != null || wordCloudRepo.existsById(work.getId())) {
+            return;
+        }
+        cache.put(work.getId(), compute(work.getId(), artifact));
+    }
+
+    public Map<String, Object> getStats() {
+        return FileContentCache.statsOf(cache);
+    }
+
+    private List<WordCloudService.WordFrequency> load(String workId) {
+        WordCloud stored = wordCloudRepo.findById(workId).orElse(null);
+        if (stored != null) {
+            return decode(stored);
+        }
+        Work work = workRepo.findById(workId)
+                .orElseThrow(() -> new RuntimeException("Work not found"));
+        return compute(workId, artifactStore.get(work));
+    }
+
+    private List<WordCloudService.WordFrequency> compute(String workId, TextArtifact artifact) {
+        List<WordCloudService.WordFrequency> freqs = wordCloudService.frequencies(artifact.getNormalized());
+
+        WordCloud entity = new WordCloud();
+        entity.setWorkId(workId);
+        entity.setUniqueWords(freqs.size());
+        entity.setFrequencies(ArtifactStore.deflate(encode(freqs)));
+        try {
+            wordCloudRepo.save(entity);
+        } catch (DataIntegrityViolationException ignored) {
+            // computed concurrently by a request and the worker, both tables are the same
+        }
+        return freqs;
+    }
+
+    private static byte[] encode(List<WordCloudService.WordFrequency> freqs) {
+        StringBuilder sb = new StringBuilder(freqs.size() * 12);
+        for (WordCloudService.WordFrequency f : freqs) {
+            sb.append(f.getWord()).append(' ').append(f.getFrequency()).append('\n');
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<WordCloudService.WordFrequency> decode(WordCloud stored) {
+        String data = new String(ArtifactStore.inflate(stored.getFrequencies()), StandardCharsets.UTF_8);
+        List<WordCloudService.WordFrequency> freqs = new ArrayList<>(stored.getUniqueWords());
+        int pos = 0;
+        while (pos < data.length()) {
+            int space = data.indexOf(' ', pos);
+            int end = data.indexOf('\n', space);
+            freqs.add(new WordCloudService.WordFrequency(
+                    data.substring(pos, space), Integer.parseInt(data, space + 1, end, 10)));
+            pos = end + 1;
+        }
+        return freqs;
+    }
+
+    // rough heap size: object headers plus the word chars
+    private static int weight(List<WordCloudService.WordFrequency> freqs) {
+        long bytes = 64;
+        for (WordCloudService.WordFrequency f : freqs) {
+            bytes += 64 + 2L * f.getWord().length();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
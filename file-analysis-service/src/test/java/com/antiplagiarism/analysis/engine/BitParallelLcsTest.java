@@ -0,0 +1,95 @@
+package com.antiplagiarism.analysis.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// the bit-parallel kernel, prefix/suffix trimming and the symbol table against the textbook DP
+class BitParallelLcsTest {
+
+    private static final int CASES = 3000;
+
+    @Test
+    void matchesDynamicProgrammingOnChars() {
+        Random random = new Random(42);
+        for (int i = 0; i < CASES; i++) {
+            // small alphabets give long LCS, wide ones many distinct symbols; lengths cross the 64-bit words
+            int alphabet = new int[]{2, 4, 26, 5000}[i % 4];
+            String s1 = randomText(random, random.nextInt(200), alphabet);
+            String s2 = random.nextBoolean() ? mutate(random, s1, alphabet) : randomText(random, random.nextInt(200), alphabet);
+            assertEquals(reference(s1, s2), BitParallelLcs.length(s1, s2), () -> s1 + " / " + s2);
+        }
+    }
+
+    @Test
+    void matchesDynamicProgrammingOnTokens() {
+        Random random = new Random(7);
+        for (int i = 0; i < CASES; i++) {
+            int[] t1 = randomTokens(random, random.nextInt(200), 1 + random.nextInt(100));
+            int[] t2 = randomTokens(random, random.nextInt(200), 1 + random.nextInt(100));
+            assertEquals(reference(t1, t2), BitParallelLcs.length(t1, t2, 0));
+        }
+    }
+
+    @Test
+    void handlesEmptyAndIdenticalInput() {
+        assertEquals(0, BitParallelLcs.length("", ""));
+        assertEquals(0, BitParallelLcs.length("", "abc"));
+        String text = randomText(new Random(1), 1000, 26);
+        assertEquals(text.length(), BitParallelLcs.length(text, text));
+    }
+
+    private static String randomText(Random random, int length, int alphabet) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(alphabet)));
+        }
+        return sb.toString();
+    }
+
+    // a few edits, so both texts share a prefix and a suffix that the trimming removes
+    private static String mutate(Random random, String text, int alphabet) {
+        StringBuilder sb = new StringBuilder(text);
+        for (int edits = random.nextInt(5); edits > 0 && !sb.isEmpty(); edits--) {
+            int at = random.nextInt(sb.length());
+            switch (random.nextInt(3)) {
+                case 0 -> sb.deleteCharAt(at);
+                case 1 -> sb.insert(at, (char) ('a' + random.nextInt(alphabet)));
+                default -> sb.setCharAt(at, (char) ('a' + random.nextInt(alphabet)));
+            }
+        }
+        return sb.toString();
+    }
+
+    private static int[] randomTokens(Random random, int length, int vocabulary) {
+        int[] tokens = new int[length];
+        for (int i = 0; i < length; i++) {
+            tokens[i] = random.nextInt(vocabulary) * 7919 - 100000;
+        }
+        return tokens;
+    }
+
+    private static int reference(String a, String b) {
+        int[][] dp = new int[a.length() + 1][b.length() + 1];
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                dp[i][j] = a.charAt(i - 1) == b.charAt(j - 1)
+                        ? dp[i - 1][j - 1] + 1
+                        : Math.max(dp[i - 1][j], dp[i][j - 1]);
+            }
+        }
+        return dp[a.length()][b.length()];
+    }
+
+    private static int reference(int[] a, int[] b) {
+        int[][] dp = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++) {
+            for (int j = 1; j <= b.length; j++) {
+                dp[i][j] = a[i - 1] == b[j - 1] ? dp[i - 1][j - 1] + 1 : Math.max(dp[i - 1][j], dp[i][j - 1]);
+            }
+        }
+        return dp[a.length][b.length];
+    }
+}
@@ -0,0 +1,57 @@
+package com.antiplagiarism.analysis.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class RawOffsetsTest {
+
+    // whitespace of every kind \s matches, control chars that trim() drops, upper case, Greek and accents
+    private static final String ALPHABET = " \t\n\r\u000B\fAbZΣéx\u0001.";
+
+    // normalizing the raw range of any normalized range gives that range back
+    @Test
+    void rawRangeNormalizesToThePassage() {
+        Random random = new Random(11);
+        for (int i = 0; i < 5000; i++) {
+            StringBuilder sb = new StringBuilder();
+            for (int n = random.nextInt(40); n > 0; n--) {
+                sb.append(ALPHABET.charAt(random.nextInt(ALPHABET.length())));
+            }
+            String raw = sb.toString();
+            String normalized = TextArtifact.normalize(raw);
+            RawOffsets offsets = RawOffsets.of(raw, normalized);
+            assertNotNull(offsets, raw);
+            for (int offset = 0; offset < normalized.length(); offset++) {
+                for (int length = 1; offset + length <= normalized.length(); length++) {
+                    int start = offsets.start(offset);
+                    String piece = raw.substring(start, start + offsets.length(offset, length));
+                    // σ/ς depend on the context of the whole text, not of the piece
+                    assertEquals(normalized.substring(offset, offset + length).replace('ς', 'σ'),
+                            piece.toLowerCase().replaceAll("\\s+", " ").replace('ς', 'σ'), raw);
+                }
+            }
+        }
+    }
+
+    // a surrogate pair or an expanded U+0130 is covered whole
+    @Test
+    void multiCharSymbolsMapToTheWholeSymbol() {
+        String raw = "a😀 İb";
+        RawOffsets offsets = RawOffsets.of(raw, TextArtifact.normalize(raw));
+        assertNotNull(offsets);
+        assertEquals(1, offsets.start(1));
+        assertEquals(2, offsets.length(1, 1));
+        assertEquals(4, offsets.start(4));
+        assertEquals(1, offsets.length(4, 2));
+    }
+
+    @Test
+    void otherTextIsRejected() {
+        assertNull(RawOffsets.of("some raw text", "some other text"));
+    }
+}
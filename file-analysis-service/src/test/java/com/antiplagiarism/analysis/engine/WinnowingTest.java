@@ -0,0 +1,75 @@
+package com.antiplagiarism.analysis.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WinnowingTest {
+
+    private static final int K = 12;
+    private static final int WINDOW = 16;
+
+    // select keeps exactly the rightmost minimum of every window
+    @Test
+    void selectsTheRightmostMinimumOfEveryWindow() {
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            long[] hashes = new long[random.nextInt(100)];
+            for (int j = 0; j < hashes.length; j++) {
+                // few distinct values, so ties are common
+                hashes[j] = random.nextInt(8);
+            }
+            int window = 1 + random.nextInt(20);
+            TreeSet<Integer> expected = new TreeSet<>();
+            for (int start = 0; start == 0 || start + window <= hashes.length; start++) {
+                int end = Math.min(hashes.length, start + window);
+                int minPos = -1;
+                for (int j = start; j < end; j++) {
+                    if (minPos < 0 || hashes[j] <= hashes[minPos]) {
+                        minPos = j;
+                    }
+                }
+                if (minPos >= 0) {
+                    expected.add(minPos);
+                }
+            }
+            assertArrayEquals(expected.stream().mapToInt(Integer::intValue).toArray(),
+                    Winnowing.select(hashes, window), () -> Arrays.toString(hashes));
+        }
+    }
+
+    // any common substring of k + window - 1 chars yields a shared fingerprint
+    @Test
+    void sharedSubstringSharesAFingerprint() {
+        Random random = new Random(5);
+        for (int i = 0; i < 2000; i++) {
+            String shared = randomText(random, K + WINDOW - 1 + random.nextInt(10));
+            String a = randomText(random, random.nextInt(300)) + shared + randomText(random, random.nextInt(300));
+            String b = randomText(random, random.nextInt(300)) + shared + randomText(random, random.nextInt(300));
+            long[] fa = Winnowing.fingerprints(a, K, WINDOW);
+            long[] fb = Winnowing.fingerprints(b, K, WINDOW);
+            assertTrue(Arrays.stream(fa).anyMatch(h -> Arrays.binarySearch(fb, h) >= 0), () -> a + " / " + b);
+        }
+    }
+
+    @Test
+    void fingerprintsAreSortedAndDistinct() {
+        long[] fingerprints = Winnowing.fingerprints(randomText(new Random(9), 5000), K, WINDOW);
+        for (int i = 1; i < fingerprints.length; i++) {
+            assertTrue(fingerprints[i - 1] < fingerprints[i]);
+        }
+    }
+
+    private static String randomText(Random random, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            sb.append((char) ('a' + random.nextInt(4)));
+        }
+        return sb.toString();
+    }
+}
@@ -2,15 +2,28 @@ package com.antiplagiarism.filestorage.controller;
 
 import com.antiplagiarism.filestorage.entity.FileEntity;
 import com.antiplagiarism.filestorage.service.FileStorageService;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -19,9 +32,14 @@ import java.util.Map;
 public class FileController {
 
     private final FileStorageService storageService;
+    private final ObjectMapper objectMapper;
 
-    public FileController(FileStorageService storageService) {
+    @Value("${file.batch.max-size:500}")
+    private int maxBatchSize;
+
+    public FileController(FileStorageService storageService, ObjectMapper objectMapper) {
         this.storageService = storageService;
+        this.objectMapper = objectMapper;
     }
 
     @PostMapping
@@ -38,6 +56,7 @@ public class FileController {
             result.put("fileId", saved.getId());
             result.put("filename", saved.getFilename());
             result.put("size", saved.getFileSize());
+            result.put("contentHash", saved.getContentHash());
             result.put("uploadedAt", saved.getUploadedAt());
             
             return ResponseEntity.ok(result);
@@ -58,6 +77,7 @@ public class FileController {
             result.put("filename", entity.getFilename());
             result.put("contentType", entity.getContentType());
             result.put("size", entity.getFileSize());
+            result.put("contentHash", entity.getContentHash());
             result.put("uploadedAt", entity.getUploadedAt());
             
             return ResponseEntity.ok(result);
@@ -87,6 +107,86 @@ public class FileController {
         }
     }
 
+    // Range, If-None-Match and If-Modified-Since are handled by Spring MVC for Resource bodies
+    @GetMapping("/{fileId}/raw")
+    @Operation(summary = "Get raw file content",
+               description = "Streams the stored file as is; supports Range requests, ETag and conditional GET")
+    public ResponseEntity<Resource> getRawContent(@PathVariable String fileId) {
+        FileEntity entity;
+        Resource resource;
+        try {
+            entity = storageService.getFile(fileId);
+            resource = storageService.getFileResource(entity);
+        } catch (RuntimeException e) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "File not found: " + fileId);
+        }
+
+        MediaType contentType = contentType(entity);
+        // stored files are never modified; older files without a hash are identified by id and size
+        String etag = entity.getContentHash() != null
+                ? entity.getContentHash()
+                : entity.getId() + "-" + entity.getFileSize();
+        return ResponseEntity.ok()
+                .contentType(contentType)
+                .eTag("\"" + etag + "\"")
+                .lastModified(entity.getUploadedAt().atZone(ZoneId.systemDefault()))
+                .header(HttpHeaders.ACCEPT_RANGES, "bytes")
+                .body(resource);
+    }
+
+    // the stored type is whatever the uploading client sent, a missing or malformed one is served as bytes
+    private static MediaType contentType(FileEntity entity) {
+        if (entity.getContentType() == null) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+        try {
+            return MediaType.parseMediaType(entity.getContentType());
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+    @PostMapping(value = "/content/batch", produces = "application/x-ndjson")
+    @Operation(summary = "Get content of several files",
+               description = "Streams one JSON object per line: {fileId, content} or {fileId, error}")
+    public ResponseEntity<StreamingResponseBody> getFileContents(@RequestBody List<String> fileIds) {
+        if (fileIds.size() > maxBatchSize) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Too many files in one batch, max " + maxBatchSize);
+        }
+
+        // file content is copied from disk into the JSON string as it is written, never loaded whole
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator gen = objectMapper.getFactory().createGenerator(out)) {
+                gen.setRootValueSeparator(new SerializedString("\n"));
+                for (String fileId : fileIds) {
+                    writeContentLine(gen, fileId);
+                }
+                gen.writeRaw('\n');
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+
+    private void writeContentLine(JsonGenerator gen, String fileId) throws IOException {
+        Reader reader;
+        try {
+            reader = storageService.openReader(fileId);
+        } catch (RuntimeException | IOException e) {
+            gen.writeStartObject();
+            gen.writeStringField("fileId", fileId);
+            gen.writeStringField("error", e instanceof IOException ? "Failed to read file" : "File not found");
+            gen.writeEndObject();
+            return;
+        }
+        try (reader) {
+            gen.writeStartObject();
+            gen.writeStringField("fileId", fileId);
+            gen.writeFieldName("content");
+            gen.writeString(reader, -1);
+            gen.writeEndObject();
+        }
+    }
+
     @GetMapping("/health")
     @Operation(summary = "Health check", description = "Check if File Storing Service is running")
     public ResponseEntity<String> health() {
@@ -28,6 +28,10 @@ public class FileEntity {
 
     private Long fileSize;
 
+    // SHA-256 of the bytes, also the blob name; null for files stored before content addressing
+    @Column(length = 64)
+    private String contentHash;
+
     @Column(nullable = false)
     private LocalDateTime uploadedAt;
 
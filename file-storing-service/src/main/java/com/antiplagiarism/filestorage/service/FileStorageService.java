@@ -2,15 +2,28 @@ package com.antiplagiarism.filestorage.service;
 
 import com.antiplagiarism.filestorage.entity.FileEntity;
 import com.antiplagiarism.filestorage.repository.FileRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
 import java.util.UUID;
 
 @Service
@@ -18,11 +31,26 @@ public class FileStorageService {
 
     private final FileRepository fileRepo;
     private final Path storagePath;
+    private final Timer storeTimer;
+    private final DistributionSummary uploadBytes;
+    private final Counter newBlobs;
+    private final Counter reusedBlobs;
 
     public FileStorageService(FileRepository fileRepo,
-                              @Value("${file.storage.location}") String location) {
+                              @Value("${file.storage.location}") String location,
+                              MeterRegistry meterRegistry) {
         this.fileRepo = fileRepo;
         this.storagePath = Paths.get(location).toAbsolutePath().normalize();
+        this.storeTimer = Timer.builder("files.store")
+                .description("Time to hash, write and register one upload")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.uploadBytes = DistributionSummary.builder("files.upload.bytes")
+                .description("Size of stored uploads")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        this.newBlobs = blobCounter(meterRegistry, "new");
+        this.reusedBlobs = blobCounter(meterRegistry, "reused");
         
         try {
             Files.createDirectories(this.storagePath);
@@ -31,13 +59,49 @@ public class FileStorageService {
         }
     }
 
+    // content-addressed: the upload is hashed while it is written to a temp file, then moved to
+    // blobs/<first two hex chars>/<sha-256>; identical uploads share one blob and differ only in the files row
     public FileEntity storeFile(MultipartFile file) throws IOException {
+        Timer.Sample sample = Timer.start();
+        try {
+            return store(file);
+        } finally {
+            sample.stop(storeTimer);
+        }
+    }
+
+    private static Counter blobCounter(MeterRegistry registry, String outcome) {
+        return Counter.builder("files.blobs")
+                .description("Uploads by whether their content was already stored")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private FileEntity store(MultipartFile file) throws IOException {
         String originalName = file.getOriginalFilename();
         String fileId = UUID.randomUUID().toString();
-        String storedName = fileId + "_" + originalName;
 
-        Path target = this.storagePath.resolve(storedName);
-        Files.copy(file.getInputStream(), target, StandardCopyOption.REPLACE_EXISTING);
+        Path temp = Files.createTempFile(this.storagePath, "upload-", ".tmp");
+        String hash;
+        Path target;
+        try {
+            MessageDigest digest = sha256();
+            try (InputStream in = new DigestInputStream(file.getInputStream(), digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            hash = HexFormat.of().formatHex(digest.digest());
+            target = blobPath(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                // rename is atomic, a concurrent upload of the same bytes just replaces an equal blob
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+                newBlobs.increment();
+            } else {
+                reusedBlobs.increment();
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
 
         FileEntity entity = new FileEntity();
         entity.setId(fileId);
@@ -45,10 +109,24 @@ public class FileStorageService {
         entity.setFilePath(target.toString());
         entity.setContentType(file.getContentType());
         entity.setFileSize(file.getSize());
+        entity.setContentHash(hash);
+        uploadBytes.record(file.getSize());
 
         return fileRepo.save(entity);
     }
 
+    private Path blobPath(String hash) {
+        return this.storagePath.resolve("blobs").resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     public FileEntity getFile(String fileId) {
         return fileRepo.findById(fileId)
                 .orElseThrow(() -> new RuntimeException("File not found: " + fileId));
@@ -58,4 +136,18 @@ public class FileStorageService {
         FileEntity entity = getFile(fileId);
         return Files.readString(Paths.get(entity.getFilePath()));
     }
+
+    // stored file as a resource; it is streamed from disk by whoever writes it out
+    public Resource getFileResource(FileEntity entity) {
+        Resource resource = new FileSystemResource(entity.getFilePath());
+        if (!resource.isReadable()) {
+            throw new RuntimeException("File not found: " + entity.getId());
+        }
+        return resource;
+    }
+
+    public Reader openReader(String fileId) throws IOException {
+        FileEntity entity = getFile(fileId);
+        return Files.newBufferedReader(Paths.get(entity.getFilePath()), StandardCharsets.UTF_8);
+    }
 }